@@ -0,0 +1,121 @@
+package com.smartdocfinder.core.dto;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON (de)serialization on the search path: the result list a search returns, and embedding
+ * responses in both encodings the embedding service can send (plain number arrays and
+ * base64-packed little-endian float32).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonCodecBenchmark {
+
+    private static final TypeReference<List<SearchResult>> RESULT_LIST = new TypeReference<>() {};
+
+    @Param({"20"})
+    public int results;
+
+    @Param({"384", "1024"})
+    public int dimensions;
+
+    @Param({"8"})
+    public int subEmbeddings;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<SearchResult> searchResults;
+    private byte[] searchResultsJson;
+    private byte[] embeddingJson;
+    private byte[] embeddingBase64Json;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        searchResults = new ArrayList<>(results);
+        for (int i = 0; i < results; i++) {
+            SearchResult result = new SearchResult();
+            result.setId(Long.toString(1000 + i));
+            result.setFilename("document_" + i + ".pdf");
+            result.setMatchType("hybrid");
+            result.setSnippet("... the <B>quarterly</B> figures show that revenue grew in every region ...");
+            result.setPassage("x".repeat(1000));
+            result.setHybridScore(random.nextFloat());
+            result.setRerankScore(random.nextFloat());
+            searchResults.add(result);
+        }
+        searchResultsJson = objectMapper.writeValueAsBytes(searchResults);
+
+        float[][] vectors = new float[subEmbeddings + 1][dimensions];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < dimensions; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+        }
+        StringBuilder plain = new StringBuilder("{\"base\":").append(array(vectors[0])).append(",\"sub\":[");
+        StringBuilder packed = new StringBuilder("{\"base\":\"").append(base64(vectors[0])).append("\",\"sub\":[");
+        for (int i = 1; i < vectors.length; i++) {
+            plain.append(i > 1 ? "," : "").append(array(vectors[i]));
+            packed.append(i > 1 ? "," : "").append('"').append(base64(vectors[i])).append('"');
+        }
+        embeddingJson = plain.append("]}").toString().getBytes();
+        embeddingBase64Json = packed.append("]}").toString().getBytes();
+    }
+
+    private static String array(float[] vector) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < vector.length; i++) {
+            json.append(i > 0 ? "," : "").append(vector[i]);
+        }
+        return json.append(']').toString();
+    }
+
+    private static String base64(float[] vector) {
+        ByteBuffer bytes = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asFloatBuffer().put(vector);
+        return Base64.getEncoder().encodeToString(bytes.array());
+    }
+
+    @Benchmark
+    public byte[] writeSearchResults() throws Exception {
+        return objectMapper.writeValueAsBytes(searchResults);
+    }
+
+    @Benchmark
+    public List<SearchResult> readSearchResults() throws Exception {
+        return objectMapper.readValue(searchResultsJson, RESULT_LIST);
+    }
+
+    @Benchmark
+    public MultiEmbeddingResponse readEmbeddingJsonArrays() throws Exception {
+        return objectMapper.readValue(embeddingJson, MultiEmbeddingResponse.class);
+    }
+
+    @Benchmark
+    public MultiEmbeddingResponse readEmbeddingBase64() throws Exception {
+        return objectMapper.readValue(embeddingBase64Json, MultiEmbeddingResponse.class);
+    }
+}
@@ -0,0 +1,164 @@
+package com.smartdocfinder.core.repository;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows/sec of the two ways documents can be inserted: one INSERT ... RETURNING round trip per
+ * row (what an IDENTITY id forces), and sequence blocks plus JDBC batches rewritten into
+ * multi-row INSERTs (the current mapping). As in production, the documents table is narrow and
+ * the text goes into a document_contents row, batched in both variants since it needs no
+ * generated id. Each operation is one document; an invocation inserts and commits one batch.
+ * Needs a scratch PostgreSQL database:
+ * java -jar build/libs/*-jmh.jar DocumentInsertBenchmark -p jdbcUrl=jdbc:postgresql://localhost:5432/bench
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DocumentInsertBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"jdbc:postgresql://localhost:5432/bench"})
+    public String jdbcUrl;
+
+    @Param({"postgres"})
+    public String user;
+
+    @Param({"postgres"})
+    public String password;
+
+    @Param({"20"})
+    public int contentKb;
+
+    private Connection conn;
+    private String content;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        content = "lorem ipsum ".repeat(contentKb * 1024 / 12);
+        conn = DriverManager.getConnection(jdbcUrl + (jdbcUrl.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true",
+                user, password);
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS document_contents_bench");
+            st.execute("DROP TABLE IF EXISTS documents_bench");
+            st.execute("DROP SEQUENCE IF EXISTS documents_bench_seq");
+            st.execute("CREATE SEQUENCE documents_bench_seq INCREMENT BY " + BATCH_SIZE);
+            st.execute("CREATE TABLE documents_bench (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "file_name VARCHAR(1024), file_path VARCHAR(1024), file_size BIGINT, file_type VARCHAR(255), "
+                    + "uploaded_at TIMESTAMP, file_hash VARCHAR(255) UNIQUE)");
+            st.execute("CREATE TABLE document_contents_bench (document_id BIGINT PRIMARY KEY, content TEXT)");
+        }
+        conn.setAutoCommit(false);
+    }
+
+    // Both variants start every iteration from an empty table.
+    @Setup(Level.Iteration)
+    public void truncate() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("TRUNCATE documents_bench, document_contents_bench");
+        }
+        conn.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS document_contents_bench");
+            st.execute("DROP TABLE IF EXISTS documents_bench");
+            st.execute("DROP SEQUENCE IF EXISTS documents_bench_seq");
+        }
+        conn.commit();
+        conn.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void identityRowByRow() throws SQLException {
+        String sql = "INSERT INTO documents_bench (file_name, file_path, file_size, file_type, uploaded_at, file_hash) "
+                + "VALUES (?, ?, ?, ?, ?, ?) RETURNING id";
+        long[] ids = new long[BATCH_SIZE];
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                bind(ps, 1, next++);
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    ids[i] = rs.getLong(1);
+                }
+            }
+        }
+        insertContents(ids);
+        conn.commit();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void sequenceBlocksBatched() throws SQLException {
+        long firstId;
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT nextval('documents_bench_seq')")) {
+            rs.next();
+            firstId = rs.getLong(1);
+        }
+        String sql = "INSERT INTO documents_bench (id, file_name, file_path, file_size, file_type, uploaded_at, file_hash) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        long[] ids = new long[BATCH_SIZE];
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                ids[i] = firstId + i;
+                ps.setLong(1, ids[i]);
+                bind(ps, 2, next++);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        insertContents(ids);
+        conn.commit();
+    }
+
+    private void insertContents(long[] ids) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO document_contents_bench (document_id, content) VALUES (?, ?)")) {
+            for (long id : ids) {
+                ps.setLong(1, id);
+                ps.setString(2, content);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private void bind(PreparedStatement ps, int firstParam, int i) throws SQLException {
+        ps.setString(firstParam, "doc-" + i + ".txt");
+        ps.setString(firstParam + 1, "/bench/doc-" + i + ".txt");
+        ps.setLong(firstParam + 2, content.length());
+        ps.setString(firstParam + 3, "text/plain");
+        ps.setTimestamp(firstParam + 4, Timestamp.valueOf(LocalDateTime.now()));
+        ps.setString(firstParam + 5, "hash-" + i);
+    }
+}
@@ -0,0 +1,53 @@
+package com.smartdocfinder.core.service;
+
+import com.smartdocfinder.core.config.LuceneConfig;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query normalization and parsing (MultiFieldQueryParser with the per-field analyzers), which
+ * every search pays before touching the index. Needs no index, so the service has no collaborators.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBuildingBenchmark {
+
+    private static final String[] QUERIES = {
+            "invoice",
+            "  Quarterly   revenue report 2024 ",
+            "contract termination clause notice period",
+            "\"service level agreement\" penalties",
+            "budget* AND (marketing OR sales)"
+    };
+
+    private LuceneService luceneService;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        Analyzer analyzer = new LuceneConfig().luceneAnalyzer();
+        luceneService = new LuceneService(null, analyzer, null, null, null, null, null, null, null);
+    }
+
+    @Benchmark
+    public Query buildQuery() {
+        String query = QUERIES[next++ % QUERIES.length];
+        return luceneService.buildLuceneQuery(luceneService.normalizeQuery(query));
+    }
+}
@@ -0,0 +1,83 @@
+package com.smartdocfinder.core.service;
+
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retrieval against a synthetic corpus: the keyword passage search alone, and the whole hybrid
+ * candidate stage (keyword + in-index vector search, RRF fusion, adaptive cut, passage loading and
+ * snippets) with the embedding service stubbed out. Corpus size and shape are parameters, e.g.
+ * java -jar build/libs/*-jmh.jar RetrievalBenchmark -p documents=100000 -p wordsPerDocument=2000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RetrievalBenchmark {
+
+    @Param({"1000", "10000"})
+    public int documents;
+
+    @Param({"500"})
+    public int wordsPerDocument;
+
+    @Param({"20000"})
+    public int vocabularySize;
+
+    private SearchFixture fixture;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new SearchFixture(documents, wordsPerDocument, vocabularySize, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    private String nextQuery() {
+        return fixture.queries.get(next++ % fixture.queries.size());
+    }
+
+    @Benchmark
+    public TopDocs keywordPassages() throws Exception {
+        LuceneService service = fixture.luceneService;
+        Query query = new BooleanQuery.Builder()
+                .add(service.buildLuceneQuery(service.normalizeQuery(nextQuery())), BooleanClause.Occur.MUST)
+                .add(LuceneService.PASSAGES_ONLY, BooleanClause.Occur.FILTER)
+                .build();
+        IndexSearcher searcher = fixture.indexManager.acquireSearcher();
+        try {
+            return searcher.search(query, 200);
+        } finally {
+            fixture.indexManager.releaseSearcher(searcher);
+        }
+    }
+
+    @Benchmark
+    public LuceneService.Candidates hybridCandidates() throws Exception {
+        return fixture.luceneService.retrieveInitialCandidates(nextQuery(), fused -> Math.min(20, fused.size()));
+    }
+}
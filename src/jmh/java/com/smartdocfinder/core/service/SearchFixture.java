@@ -0,0 +1,167 @@
+package com.smartdocfinder.core.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartdocfinder.core.ai.EmbeddingClient;
+import com.smartdocfinder.core.config.LuceneConfig;
+import com.smartdocfinder.core.dto.EmbeddingResultMessage;
+import com.smartdocfinder.core.dto.SearchResult;
+import com.smartdocfinder.core.repository.DocumentContentRepository;
+import com.smartdocfinder.core.repository.DocumentContentRepositoryCustom.PassageText;
+import com.smartdocfinder.core.repository.DocumentContentRepositoryCustom.TextRange;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A LuceneService wired by hand over an in-memory index filled with a synthetic corpus.
+ * The embedding, reranker and generator services and document_contents are replaced by
+ * in-process stubs, so the benchmarks measure this process only. Settings the application injects with @Value are set to
+ * their application.properties defaults.
+ */
+public final class SearchFixture implements Closeable {
+
+    public static final int DIMENSIONS = 384;
+
+    public final LuceneIndexManager indexManager;
+    public final LuceneService luceneService;
+    public final List<String> queries = new ArrayList<>();
+    private final ExecutorService searchExecutor = Executors.newFixedThreadPool(4);
+    private final StubReranker reranker;
+    private final Map<Long, String> filenames = new HashMap<>();
+    private final Map<Long, String> texts = new HashMap<>();
+
+    public SearchFixture(int documents, int wordsPerDocument, int vocabularySize, long seed) throws Exception {
+        Analyzer analyzer = new LuceneConfig().luceneAnalyzer();
+        indexManager = new LuceneIndexManager(new ByteBuffersDirectory(), analyzer, new IndexCheckpointTracker(),
+                1.0, 0.1, 3600, Long.MAX_VALUE, Long.MAX_VALUE);
+        invoke(LuceneIndexManager.class, indexManager, "init");
+
+        SyntheticCorpus corpus = new SyntheticCorpus(vocabularySize, seed);
+        reranker = new StubReranker();
+        luceneService = new LuceneService(indexManager, analyzer, new SemanticSearchService(null),
+                new StubEmbeddingClient(seed), reranker, new StubGenerator(), searchExecutor,
+                new RagResponseCache(new ObjectMapper(), indexManager, false, 1, 1, 1, ""), stubContents());
+        set(luceneService, "keywordTimeoutMs", 5000L);
+        set(luceneService, "semanticTimeoutMs", 10000L);
+        set(luceneService, "highlightMaxChars", 20000);
+        set(luceneService, "maxCandidates", 50);
+        set(luceneService, "minCandidates", 10);
+        set(luceneService, "relativeScoreCutoff", 0.4f);
+        set(luceneService, "passageSize", 1000);
+        set(luceneService, "passageOverlap", 150);
+
+        List<EmbeddingResultMessage> embeddings = new ArrayList<>();
+        for (long id = 1; id <= documents; id++) {
+            filenames.put(id, corpus.nextFilename());
+            texts.put(id, corpus.nextText(wordsPerDocument));
+            luceneService.indexDocument(id, filenames.get(id), texts.get(id));
+            EmbeddingResultMessage embedding = new EmbeddingResultMessage();
+            embedding.setDocumentId(id);
+            embedding.setVector(corpus.nextVector(DIMENSIONS));
+            embeddings.add(embedding);
+            if (embeddings.size() == 500) {
+                luceneService.indexEmbeddings(embeddings);
+                embeddings.clear();
+            }
+        }
+        luceneService.indexEmbeddings(embeddings);
+        indexManager.commit();
+        indexManager.waitForGeneration(indexManager.getIndexWriter().getMaxCompletedSequenceNumber(), 60_000);
+
+        for (int i = 0; i < 64; i++) {
+            queries.add(corpus.nextQuery());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        searchExecutor.shutdownNow();
+        try {
+            invoke(RerankerService.class, reranker, "shutdown");
+            invoke(LuceneIndexManager.class, indexManager, "cleanup");
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    // Serves passage ranges from the corpus in memory; findPassages is all search calls.
+    @SuppressWarnings("unchecked")
+    private DocumentContentRepository stubContents() {
+        return (DocumentContentRepository) Proxy.newProxyInstance(DocumentContentRepository.class.getClassLoader(),
+                new Class<?>[] {DocumentContentRepository.class}, (proxy, method, args) -> {
+                    if (!method.getName().equals("findPassages")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    List<PassageText> passages = new ArrayList<>();
+                    for (TextRange range : (List<TextRange>) args[0]) {
+                        String text = texts.get(range.documentId());
+                        int from = text.offsetByCodePoints(0, range.start());
+                        passages.add(new PassageText(filenames.get(range.documentId()),
+                                text.substring(from, text.offsetByCodePoints(from, range.length()))));
+                    }
+                    return passages;
+                });
+    }
+
+    private static void set(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    // The lifecycle methods Spring would call are private.
+    private static void invoke(Class<?> type, Object target, String name) throws Exception {
+        Method method = type.getDeclaredMethod(name);
+        method.setAccessible(true);
+        method.invoke(target);
+    }
+
+    // Deterministic vector per query instead of a call to the embedding service.
+    private static final class StubEmbeddingClient extends EmbeddingClient {
+        private final long seed;
+
+        StubEmbeddingClient(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public float[] embedQuery(String normalizedQuery) {
+            return new SyntheticCorpus(1, seed ^ normalizedQuery.hashCode()).nextVector(DIMENSIONS);
+        }
+    }
+
+    // Keeps the fused order; never starts a remote call.
+    private static final class StubReranker extends RerankerService {
+        StubReranker() {
+            super(WebClient.create(), "/rerank/batch", 0, 1, 1, 2000, 1000);
+        }
+
+        @Override
+        public List<SearchResult> rerank(String query, List<SearchResult> documents) {
+            return documents;
+        }
+    }
+
+    private static final class StubGenerator extends GeneratorService {
+        StubGenerator() {
+            super(WebClient.create(), "/generate/stream");
+        }
+
+        @Override
+        public String generateAnswer(String query, List<SearchResult> contextDocuments) {
+            return "";
+        }
+    }
+}
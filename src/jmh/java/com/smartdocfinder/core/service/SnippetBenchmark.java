@@ -0,0 +1,96 @@
+package com.smartdocfinder.core.service;
+
+import com.smartdocfinder.core.repository.DocumentContentRepositoryCustom.PassageText;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch highlighting of result passages (createSnippets) for a fixed set of queries whose
+ * matching passages and their text are looked up once in setup, so only the highlighter is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnippetBenchmark {
+
+    @Param({"5000"})
+    public int documents;
+
+    @Param({"500"})
+    public int wordsPerDocument;
+
+    @Param({"10", "50"})
+    public int results;
+
+    private SearchFixture fixture;
+    private IndexSearcher searcher;
+    private final List<Query> queries = new ArrayList<>();
+    private final List<int[]> passages = new ArrayList<>();
+    private final List<List<PassageText>> texts = new ArrayList<>();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new SearchFixture(documents, wordsPerDocument, 20000, 42);
+        searcher = fixture.indexManager.acquireSearcher();
+        LuceneService service = fixture.luceneService;
+        for (String text : fixture.queries) {
+            Query query = service.buildLuceneQuery(service.normalizeQuery(text));
+            Query passageQuery = new BooleanQuery.Builder()
+                    .add(query, BooleanClause.Occur.MUST)
+                    .add(LuceneService.PASSAGES_ONLY, BooleanClause.Occur.FILTER)
+                    .build();
+            TopDocs hits = searcher.search(passageQuery, results);
+            if (hits.scoreDocs.length == 0) {
+                continue;
+            }
+            int[] docs = new int[hits.scoreDocs.length];
+            int i = 0;
+            for (ScoreDoc hit : hits.scoreDocs) {
+                docs[i++] = hit.doc;
+            }
+            queries.add(query);
+            passages.add(docs);
+            texts.add(service.readPassages(searcher, LuceneService.readDocIds(searcher.getIndexReader(), hits.scoreDocs), docs));
+        }
+        if (queries.isEmpty()) {
+            throw new IllegalStateException("No query matched the synthetic corpus");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.indexManager.releaseSearcher(searcher);
+        fixture.close();
+    }
+
+    @Benchmark
+    public String[] createSnippets() throws Exception {
+        int i = next++ % queries.size();
+        return fixture.luceneService.createSnippets(queries.get(i), searcher, passages.get(i), texts.get(i));
+    }
+}
@@ -0,0 +1,102 @@
+package com.smartdocfinder.core.service;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic text for the benchmarks. Words are drawn from a fixed vocabulary with a
+ * Zipf-like skew, so postings lengths look like natural text: a few very common terms, a long tail
+ * of rare ones. The same seed always produces the same corpus and queries.
+ */
+public final class SyntheticCorpus {
+
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ren", "sa", "tor", "vel", "quin", "da", "fe", "gor", "hu",
+            "ix", "jun", "pa", "ros", "ti", "ul", "wen", "zo"
+    };
+
+    private final String[] vocabulary;
+    private final double[] cumulative;
+    private final Random random;
+
+    public SyntheticCorpus(int vocabularySize, long seed) {
+        this.random = new Random(seed);
+        this.vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            vocabulary[i] = word(i);
+        }
+        // P(rank r) ~ 1 / r
+        this.cumulative = new double[vocabularySize];
+        double sum = 0;
+        for (int i = 0; i < vocabularySize; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < vocabularySize; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    private static String word(int index) {
+        StringBuilder word = new StringBuilder();
+        int n = index;
+        do {
+            word.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        } while (n > 0);
+        return word.toString();
+    }
+
+    public String nextWord() {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return vocabulary[index >= 0 ? index : Math.min(-index - 1, vocabulary.length - 1)];
+    }
+
+    /**
+     * Text of roughly the given number of words, broken into sentences of 8 to 20 words.
+     */
+    public String nextText(int words) {
+        StringBuilder text = new StringBuilder(words * 8);
+        int sentence = 0;
+        int sentenceLength = 8 + random.nextInt(13);
+        for (int i = 0; i < words; i++) {
+            if (sentence > 0) {
+                text.append(' ');
+            }
+            text.append(nextWord());
+            if (++sentence == sentenceLength) {
+                text.append(". ");
+                sentence = 0;
+                sentenceLength = 8 + random.nextInt(13);
+            }
+        }
+        return text.toString();
+    }
+
+    public String nextFilename() {
+        return nextWord() + "_" + nextWord() + (random.nextBoolean() ? ".pdf" : ".docx");
+    }
+
+    /**
+     * A query of one to three words, mostly from the middle of the frequency range.
+     */
+    public String nextQuery() {
+        int terms = 1 + random.nextInt(3);
+        StringBuilder query = new StringBuilder();
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) {
+                query.append(' ');
+            }
+            query.append(vocabulary[Math.min(vocabulary.length - 1, 10 + random.nextInt(Math.max(1, vocabulary.length / 10)))]);
+        }
+        return query.toString();
+    }
+
+    public float[] nextVector(int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,63 @@
+package com.smartdocfinder.core.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reciprocal Rank Fusion of a keyword and a semantic ranking of the given depth, with the given
+ * share of documents appearing in both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankFusionBenchmark {
+
+    @Param({"50", "200"})
+    public int depth;
+
+    @Param({"0.3"})
+    public double overlap;
+
+    private long[] keyword;
+    private long[] semantic;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        keyword = new long[depth];
+        semantic = new long[depth];
+        for (int i = 0; i < depth; i++) {
+            keyword[i] = 1_000_000L + i;
+            semantic[i] = random.nextDouble() < overlap ? keyword[random.nextInt(depth)] : 2_000_000L + i;
+        }
+        // Rankings hold each id once.
+        for (int i = 0; i < depth; i++) {
+            for (int j = 0; j < i; j++) {
+                if (semantic[j] == semantic[i]) {
+                    semantic[i] = 2_000_000L + i;
+                    break;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public RankFusion.Fused rrf() {
+        return RankFusion.rrf(keyword, semantic, 60);
+    }
+}
@@ -1,15 +1,11 @@
-
 package com.smartdocfinder.core.Listeners;
 
-import com.smartdocfinder.core.config.RabbitMQConfig;
 import com.smartdocfinder.core.events.DocumentBatchSavedEvent;
-import com.smartdocfinder.core.model.DocumentEntity;
-import java.util.Map;
+import com.smartdocfinder.core.service.EmbeddingOutboxRelay;
 import lombok.RequiredArgsConstructor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionalEventListener;
 
@@ -17,22 +13,13 @@ import org.springframework.transaction.event.TransactionalEventListener;
 @RequiredArgsConstructor
 public class EmbeddingMessageListener {
     private static final Logger logger = LoggerFactory.getLogger(EmbeddingMessageListener.class); // ✅ Add logger
-    private final RabbitTemplate rabbitTemplate;
+    private final EmbeddingOutboxRelay outboxRelay;
 
-    @TransactionalEventListener
+    // The jobs themselves were written to the outbox with the documents; this only hands the relay
+    // their text and wakes it, so nothing here waits on the broker.
+    @TransactionalEventListener(fallbackExecution = true)
     public void handleDocumentBatchSavedEvent(DocumentBatchSavedEvent event) {
-        for(DocumentEntity doc: event.savedDocuments()) {
-            // Prepare the message with the document ID and content
-            Map<String, Object> message = Map.of(
-                "documentId", doc.getId(),
-                "content", doc.getContent()
-            );
-             logger.debug("Sending message to RabbitMQ: {}", message);
-
-            // Send the message to the RabbitMQ queue for embedding processing
-            rabbitTemplate.convertAndSend(RabbitMQConfig.QUEUE_NAME, message);
-
-
-        }
+        logger.debug("Waking the embedding outbox relay for {} saved documents.", event.savedDocuments().size());
+        outboxRelay.offerContent(event.savedDocuments());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package com.smartdocfinder.core.Listeners;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+import com.smartdocfinder.core.config.RabbitMQConfig;
+import com.smartdocfinder.core.dto.EmbeddingResultMessage;
+import com.smartdocfinder.core.service.LuceneService;
+
+import lombok.RequiredArgsConstructor;
+
+@Component
+@RequiredArgsConstructor
+public class EmbeddingResultListener {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingResultListener.class);
+
+    private final LuceneService luceneService;
+
+    // Writes finished document embeddings into the Lucene index, one IndexWriter pass per batch.
+    // Invalid results are skipped individually by indexEmbeddings. Anything thrown from here is an
+    // index failure: the container rejects the batch and the broker dead-letters it (see RabbitMQConfig).
+    @RabbitListener(queues = RabbitMQConfig.RESULTS_QUEUE_NAME, containerFactory = "embeddingResultsContainerFactory")
+    public void handleEmbeddingResults(List<EmbeddingResultMessage> results) throws IOException {
+        int skipped = luceneService.indexEmbeddings(results);
+        logger.debug("Indexed {} document embeddings ({} skipped as invalid).", results.size() - skipped, skipped);
+    }
+}
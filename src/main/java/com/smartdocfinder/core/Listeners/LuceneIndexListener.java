@@ -8,8 +8,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionalEventListener;
 
 import com.smartdocfinder.core.events.DocumentBatchSavedEvent;
-import com.smartdocfinder.core.model.DocumentEntity;
-import com.smartdocfinder.core.service.LuceneService;
+import com.smartdocfinder.core.events.DocumentsRemovedEvent;
+import com.smartdocfinder.core.service.LuceneIndexingQueue;
 
 import lombok.RequiredArgsConstructor;
 
@@ -19,17 +19,19 @@ public class LuceneIndexListener {
     private static final Logger logger = LoggerFactory.getLogger(LuceneIndexListener.class);
 
     @Autowired
-    private LuceneService luceneService;
+    private LuceneIndexingQueue indexingQueue;
 
-    // ✅ This method ALSO runs automatically after the transaction commits
-    @TransactionalEventListener
+    // ✅ Runs after the persist transaction commits (or immediately when published outside one).
+    // Only hands the batch to the indexing lanes; the writes and their retries happen there.
+    @TransactionalEventListener(fallbackExecution = true)
     public void handleDocumentBatchSaved(DocumentBatchSavedEvent event) {
-        for (DocumentEntity doc : event.savedDocuments()) {
-            try {
-                luceneService.indexDocument(doc.getId(), doc.getFileName(), doc.getContent());
-            } catch (Exception e) {
-                logger.error("Failed to index document ID: {}", doc.getId(), e);
-            }
-        }
+        indexingQueue.index(event.savedDocuments(), event.ticket());
+        logger.debug("Queued {} documents for indexing.", event.savedDocuments().size());
+    }
+
+    // ✅ Drops documents whose source files are gone, together with their vectors
+    @TransactionalEventListener(fallbackExecution = true)
+    public void handleDocumentsRemoved(DocumentsRemovedEvent event) {
+        indexingQueue.delete(event.documentIds());
     }
 }
@@ -1,36 +1,126 @@
 package com.smartdocfinder.core.ai;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.smartdocfinder.core.dto.MultiEmbeddingResponse;
+import com.smartdocfinder.core.util.FloatVectorCodec;
 
 import jakarta.annotation.PostConstruct;
 
 @Component
 public class EmbeddingClient {
 
+    // Raw little-endian float32 body framed as (count, dimension, values...); see FloatVectorCodec.
+    public static final MediaType FLOAT32_LE = MediaType.parseMediaType("application/x-float32-le");
+
     @Value("${embedding.service.url:http://embedding:8000}")
     private String baseUrl;
 
+    // json (default) | base64 | binary. The service may ignore the hint and answer with plain JSON.
+    @Value("${embedding.service.encoding:json}")
+    private String encoding;
+
+    @Value("${embedding.cache.max-entries:10000}")
+    private long cacheMaxEntries;
+
+    @Value("${embedding.cache.ttl-minutes:60}")
+    private long cacheTtlMinutes;
+
     private WebClient webClient;
 
+    // Base query vectors keyed by the normalized query, as bare float arrays (search never uses the
+    // sub-embeddings, so they are not kept). Concurrent misses for the same key wait on a single
+    // load, so a burst of identical queries makes one upstream call.
+    private LoadingCache<String, float[]> queryCache;
+
     @PostConstruct
     public void init() {
         this.webClient = WebClient.builder()
                 .baseUrl(baseUrl)
                 .build();
+        this.queryCache = CacheBuilder.newBuilder()
+                .maximumSize(cacheMaxEntries)
+                .expireAfterWrite(cacheTtlMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build(CacheLoader.from(query -> fetchEmbedding(query).getBase()));
+    }
+
+    /**
+     * Returns the base embedding for an already normalized query, served from the local cache when possible.
+     * The array is the caller's own copy, so cached vectors cannot be changed from outside.
+     */
+    public float[] embedQuery(String normalizedQuery) {
+        try {
+            return queryCache.getUnchecked(normalizedQuery).clone();
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Hit, miss and eviction counters for the query embedding cache.
+     */
+    public CacheStats getCacheStats() {
+        return queryCache.stats();
     }
 
-    public MultiEmbeddingResponse embedQuery(String query) {
+    public long getCacheSize() {
+        return queryCache.size();
+    }
+
+    private MultiEmbeddingResponse fetchEmbedding(String query) {
+        boolean binary = "binary".equalsIgnoreCase(encoding);
         return webClient.post()
                 .uri("/multi-embed")
-                .bodyValue(new EmbedRequest(query))
-                .retrieve()
-                .bodyToMono(MultiEmbeddingResponse.class)
-                .block();
+                .accept(binary
+                        ? new MediaType[] {FLOAT32_LE, MediaType.APPLICATION_JSON}
+                        : new MediaType[] {MediaType.APPLICATION_JSON})
+                .bodyValue(new EmbedRequest(query, "json".equalsIgnoreCase(encoding) ? null : encoding.toLowerCase()))
+                .exchangeToMono(response -> {
+                    if (response.statusCode().isError()) {
+                        return response.<MultiEmbeddingResponse>createError();
+                    }
+                    boolean float32Body = response.headers().contentType()
+                            .map(FLOAT32_LE::isCompatibleWith)
+                            .orElse(false);
+                    if (float32Body) {
+                        // A malformed frame fails the call like any other error, so search degrades to keyword-only.
+                        return response.bodyToMono(ByteBuffer.class)
+                                .flatMap(body -> Mono.fromCallable(() -> fromFramedVectors(body)));
+                    }
+                    // JSON fallback: number arrays or base64-packed strings, decoded without boxing.
+                    return response.bodyToMono(MultiEmbeddingResponse.class);
+                })
+                .blockOptional()
+                .orElseThrow(() -> new IllegalStateException("Embedding service returned an empty response"));
+    }
+
+    private static MultiEmbeddingResponse fromFramedVectors(ByteBuffer body) throws IOException {
+        float[][] vectors = FloatVectorCodec.readFramedVectors(body);
+        MultiEmbeddingResponse response = new MultiEmbeddingResponse();
+        response.setBase(vectors.length > 0 ? vectors[0] : new float[0]);
+        response.setSub(vectors.length > 1 ? Arrays.copyOfRange(vectors, 1, vectors.length) : new float[0][]);
+        return response;
     }
 
-    private record EmbedRequest(String text) {}
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private record EmbedRequest(String text, String encoding) {}
 }
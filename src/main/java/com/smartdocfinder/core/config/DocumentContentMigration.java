@@ -0,0 +1,92 @@
+package com.smartdocfinder.core.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves text left in the old documents.content column into document_contents and drops the
+ * column. Schema update only adds columns, so the old one would otherwise stay and keep every
+ * documents row wide. Opt-in (documents.content-migration.enabled), because dropping the column
+ * cannot be undone: until it runs, documents without a document_contents row have their text
+ * re-extracted from the source file when it is needed. The text is copied in short per-chunk
+ * transactions; only the final drop takes the exclusive lock, and gives up if it cannot get it
+ * within lock-timeout-ms, to be retried on the next start. Later starts find no column to move.
+ * Depends on the EntityManagerFactory so schema update has created document_contents first.
+ */
+@Component
+public class DocumentContentMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentContentMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final long lockTimeoutMs;
+
+    public DocumentContentMigration(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                    EntityManagerFactory entityManagerFactory,
+                                    @Value("${documents.content-migration.enabled:false}") boolean enabled,
+                                    @Value("${documents.content-migration.chunk-size:1000}") int chunkSize,
+                                    @Value("${documents.content-migration.lock-timeout-ms:5000}") long lockTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.lockTimeoutMs = Math.max(1, lockTimeoutMs);
+    }
+
+    @PostConstruct
+    void moveContentColumn() {
+        Integer columns = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns "
+                        + "WHERE table_schema = current_schema() AND table_name = 'documents' AND column_name = 'content'",
+                Integer.class);
+        if (columns == null || columns == 0) {
+            return;
+        }
+        if (!enabled) {
+            logger.info("documents.content still exists; set documents.content-migration.enabled=true "
+                    + "to move its text to document_contents and drop it.");
+            return;
+        }
+
+        // Rows written from now on never fill the old column, so one pass over the ids copies everything.
+        long moved = 0;
+        long afterId = 0;
+        while (true) {
+            Long maxId = jdbcTemplate.queryForObject(
+                    "SELECT MAX(id) FROM (SELECT id FROM documents WHERE id > ? ORDER BY id LIMIT ?) AS chunk",
+                    Long.class, afterId, chunkSize);
+            if (maxId == null) {
+                break;
+            }
+            long from = afterId;
+            Integer rows = transactionTemplate.execute(status -> jdbcTemplate.update(
+                    "INSERT INTO document_contents (document_id, content) "
+                            + "SELECT id, content FROM documents WHERE id > ? AND id <= ? AND content IS NOT NULL "
+                            + "ON CONFLICT (document_id) DO NOTHING",
+                    from, maxId));
+            moved += rows == null ? 0 : rows;
+            afterId = maxId;
+        }
+        logger.info("Copied the text of {} documents to document_contents.", moved);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+                jdbcTemplate.execute("ALTER TABLE documents DROP COLUMN content");
+            });
+            logger.info("Dropped documents.content.");
+        } catch (DataAccessException e) {
+            logger.warn("Could not drop documents.content (retried on the next start): {}", e.getMessage());
+        }
+    }
+}
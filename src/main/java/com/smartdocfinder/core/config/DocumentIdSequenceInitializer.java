@@ -0,0 +1,47 @@
+package com.smartdocfinder.core.config;
+
+import com.smartdocfinder.core.model.DocumentEntity;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Moves the document id sequence past the highest existing id. Rows written while ids came
+ * from an IDENTITY column (or by a COPY/psql load) would otherwise collide with the
+ * first ids Hibernate hands out from a newly created sequence.
+ * Depends on the EntityManagerFactory so schema update has created the sequence first.
+ */
+@Component
+public class DocumentIdSequenceInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentIdSequenceInitializer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DocumentIdSequenceInitializer(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void alignSequence() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM documents", Long.class);
+        if (maxId == null) {
+            return;
+        }
+        Map<String, Object> seq = jdbcTemplate.queryForMap(
+                "SELECT last_value, is_called FROM " + DocumentEntity.ID_SEQUENCE);
+        long lastValue = ((Number) seq.get("last_value")).longValue();
+        boolean called = (Boolean) seq.get("is_called");
+        // With the pooled-lo optimizer a sequence value v hands out the block [v, v + allocationSize).
+        long nextBlockStart = called ? lastValue + DocumentEntity.ID_ALLOCATION_SIZE : lastValue;
+        if (nextBlockStart <= maxId) {
+            jdbcTemplate.queryForObject("SELECT setval(?::regclass, ?, false)", Long.class, DocumentEntity.ID_SEQUENCE, maxId + 1);
+            logger.info("Moved {} to {} to follow existing document ids.", DocumentEntity.ID_SEQUENCE, maxId + 1);
+        }
+    }
+}
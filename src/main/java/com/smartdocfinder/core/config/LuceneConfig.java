@@ -1,7 +1,6 @@
 package com.smartdocfinder.core.config;
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.custom.CustomAnalyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -36,21 +35,11 @@ public class LuceneConfig {
         return new StandardAnalyzer(); // used for full filename field
     }
 
-    @Bean
-    public Analyzer edgeNGramAnalyzer() throws IOException {
-        return CustomAnalyzer.builder()
-            .withTokenizer("standard")
-            .addTokenFilter("lowercase")
-            .addTokenFilter("edgeNGram", "minGramSize", "2", "maxGramSize", "20")
-            .build();
-    }
-
     @Bean
     @Primary
     public PerFieldAnalyzerWrapper luceneAnalyzer() throws IOException {
         Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
         fieldAnalyzers.put("filename", filenameAnalyzer());                   // for regular Lucene filename search
-        fieldAnalyzers.put("filename_autocomplete", edgeNGramAnalyzer());     // for prefix/EdgeNGram support
         return new PerFieldAnalyzerWrapper(defaultAnalyzer(), fieldAnalyzers);
     }
 }
@@ -1,15 +1,58 @@
 package com.smartdocfinder.core.config;
 
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 
 @Configuration
 public class RabbitMQConfig {
+    // Carries EmbeddingJobBatch messages: many documents per message, text inline (optionally gzip,
+    // see the content-encoding property) or as a reference to /api/files/documents/{id}/content.
     public static final String QUEUE_NAME = "embedding.jobs";
+    // The embedding worker publishes {"documentId": ..., "vector": [...]} here once a job finishes.
+    public static final String RESULTS_QUEUE_NAME = "embedding.results";
+    // Result batches the index could not take end up here (via the default exchange) for inspection or replay.
+    public static final String RESULTS_DEAD_LETTER_QUEUE_NAME = "embedding.results.dlq";
 
     @Bean
     public Queue embeddingQueue() {
         return new Queue(QUEUE_NAME, true);
     }
+
+    @Bean
+    public Queue embeddingResultsQueue() {
+        return QueueBuilder.durable(RESULTS_QUEUE_NAME)
+                .deadLetterExchange("")
+                .deadLetterRoutingKey(RESULTS_DEAD_LETTER_QUEUE_NAME)
+                .build();
+    }
+
+    @Bean
+    public Queue embeddingResultsDeadLetterQueue() {
+        return new Queue(RESULTS_DEAD_LETTER_QUEUE_NAME, true);
+    }
+
+    // Delivers finished embeddings in batches so they can be written to the index in one pass.
+    @Bean
+    public SimpleRabbitListenerContainerFactory embeddingResultsContainerFactory(
+            ConnectionFactory connectionFactory,
+            MessageConverter jsonMessageConverter,
+            @Value("${embedding.results.batch-size:100}") int batchSize,
+            @Value("${embedding.results.receive-timeout-ms:500}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs); // Flushes a partial batch when the queue goes quiet
+        factory.setDefaultRequeueRejected(false); // A failed batch is dead-lettered, not redelivered in a loop
+        return factory;
+    }
 }
@@ -0,0 +1,28 @@
+package com.smartdocfinder.core.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class SearchExecutorConfig {
+
+    // Runs the independent branches of a hybrid search (keyword, embedding + vector) in parallel.
+    // Virtual threads keep the blocking HTTP calls cheap; the pool bounds how many run at once.
+    // The queue is bounded too: under overload a branch is rejected at once (LuceneService then
+    // degrades) instead of queueing until it misses its timeout.
+    @Bean(name = "searchExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService searchExecutor(
+            @Value("${search.executor.max-concurrency:64}") int maxConcurrency,
+            @Value("${search.executor.queue-capacity:64}") int queueCapacity) {
+        return new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                Thread.ofVirtual().name("search-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
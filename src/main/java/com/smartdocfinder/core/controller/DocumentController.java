@@ -2,11 +2,25 @@ package com.smartdocfinder.core.controller;
 
 import com.smartdocfinder.core.dto.RAGResponse;
 import com.smartdocfinder.core.service.DocumentUploadService;
+import com.smartdocfinder.core.service.FilenameSuggester;
+import com.smartdocfinder.core.service.KeywordSearchService;
 import com.smartdocfinder.core.service.LuceneService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 @RestController
@@ -15,29 +29,148 @@ import org.springframework.web.bind.annotation.*;
 public class DocumentController {
 
     private final LuceneService luceneService;
+    private final FilenameSuggester filenameSuggester;
+    private final KeywordSearchService keywordSearchService;
+    private final DocumentUploadService documentUploadService;
+    private static final int MAX_SUGGESTIONS = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
    
     /**
      * The main search endpoint for the RAG pipeline.
+     * Identical concurrent questions share one pipeline run. The response is asynchronous, so a
+     * client that disconnects stops waiting, and the run is cancelled if it was the last one waiting.
      *
      * @param query The user's search query.
+     * @param noCache Skip the response cache and compute a fresh answer.
      * @return A RAGResponse containing the generated answer and source documents.
      */
     @GetMapping("/search")
-    public ResponseEntity<RAGResponse> search(@RequestParam("q") String query) {
+    public Mono<ResponseEntity<RAGResponse>> search(@RequestParam("q") String query,
+                                                    @RequestParam(value = "nocache", defaultValue = "false") boolean noCache) {
         if (query == null || query.isBlank()) {
-            return ResponseEntity.badRequest().build();
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        // ✅ Cancelling the Mono (client gone, request timed out) cancels this caller's future.
+        return Mono.fromFuture(() -> luceneService.searchAsync(query, !noCache))
+                .map(ResponseEntity::ok)
+                .onErrorReturn(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+    }
+
+    /**
+     * Streaming variant of the search endpoint. Sends the re-ranked sources as soon as they are
+     * known, then the generated answer token by token as server-sent events.
+     *
+     * @param query The user's search query.
+     * @param noCache Skip the response cache and compute a fresh answer.
+     * @return A stream of "sources", "token" and finally "done" (or "error") events.
+     */
+    @GetMapping(value = "/search/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> searchStream(@RequestParam("q") String query,
+                                                      @RequestParam(value = "nocache", defaultValue = "false") boolean noCache) {
+        if (query == null || query.isBlank()) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Query must not be blank"));
+        }
+        return luceneService.streamSearch(query, !noCache);
+    }
+
+    /**
+     * Ranked file list only: the Lucene stage (plus semantic fusion if asked for), without
+     * re-ranking or answer generation. Results are streamed as NDJSON, one object per document.
+     * Pass the X-Next-Cursor header of a response back as cursor to get the next page; the pages
+     * of one cursor chain all come from the same point-in-time view of the index.
+     *
+     * @param query The search query.
+     * @param cursor Cursor from the previous page, or absent for the first page.
+     * @param size Results per page (at most 1000).
+     * @param fields Comma-separated fields to return (default id,filename,score).
+     * @param semantic Fuse in vector search results. Only a first page is available in this mode.
+     * @return NDJSON results, with X-Total-Hits and (unless this is the last page) X-Next-Cursor headers.
+     *         400 for an unknown field or malformed cursor, 410 if the cursor has expired.
+     */
+    @GetMapping(value = "/find", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<ResponseEntity<Flux<Map<String, Object>>>> find(@RequestParam("q") String query,
+                                                               @RequestParam(value = "cursor", required = false) String cursor,
+                                                               @RequestParam(value = "size", defaultValue = "20") int size,
+                                                               @RequestParam(value = "fields", required = false) String fields,
+                                                               @RequestParam(value = "semantic", defaultValue = "false") boolean semantic) {
+        if (query == null || query.isBlank()) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        Set<String> projection;
+        if (fields == null || fields.isBlank()) {
+            projection = KeywordSearchService.DEFAULT_FIELDS;
+        } else {
+            projection = new LinkedHashSet<>();
+            for (String field : Arrays.stream(fields.split(",")).map(String::strip).filter(f -> !f.isEmpty()).toList()) {
+                if (!KeywordSearchService.ALLOWED_FIELDS.contains(field)) {
+                    return Mono.just(ResponseEntity.badRequest().build());
+                }
+                projection.add(field);
+            }
+        }
+        if (semantic && cursor != null && !cursor.isBlank()) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+
+        return Mono.fromCallable(() -> keywordSearchService.search(query, cursor, pageSize, projection, semantic))
+                .subscribeOn(Schedulers.boundedElastic()) // Lucene and the database block
+                .map(page -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                            .contentType(MediaType.APPLICATION_NDJSON)
+                            .header("X-Total-Hits", Long.toString(page.totalHits()));
+                    if (page.nextCursor() != null) {
+                        response.header("X-Next-Cursor", page.nextCursor());
+                    }
+                    return response.body(Flux.fromIterable(page.results()));
+                })
+                .onErrorResume(KeywordSearchService.CursorExpiredException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.GONE).build()))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()))
+                .onErrorReturn(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+    }
+
+    /**
+     * Filename typeahead. Matches filenames containing a word that starts with the given prefix.
+     *
+     * @param prefix What the user has typed so far.
+     * @param limit Maximum number of suggestions (at most 50).
+     * @return Matching filenames, best first.
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<String>> suggest(@RequestParam("q") String prefix,
+                                                @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return ResponseEntity.ok(List.of());
         }
         try {
-            // ✅ CORRECTED: Call the refactored search method with only the query string.
-            // It now returns a RAGResponse object directly.
-            RAGResponse response = luceneService.search(query);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(filenameSuggester.suggest(prefix.strip(), Math.max(1, Math.min(limit, MAX_SUGGESTIONS))));
         } catch (Exception e) {
-            // It's good practice to log the exception here
-            // logger.error("An error occurred during search for query: {}", query, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
 
-    
+    /**
+     * Extracted text of a document, as stored in document_contents. Used by the embedding
+     * worker for jobs published in reference mode.
+     *
+     * @param id The document ID.
+     * @param offset First character to return.
+     * @param length Maximum number of characters to return.
+     * @return The requested range as plain text, or 404 if the document has no stored text.
+     */
+    @GetMapping(value = "/documents/{id}/content", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> documentContent(@PathVariable("id") long id,
+                                                  @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                                  @RequestParam(value = "length", defaultValue = "2147483647") int length) {
+        if (offset < 0 || length < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            String content = documentUploadService.readContent(id, offset, length);
+            return content == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(content);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
 }
@@ -0,0 +1,93 @@
+package com.smartdocfinder.core.controller;
+
+import com.google.common.cache.CacheStats;
+import com.smartdocfinder.core.ai.EmbeddingClient;
+import com.smartdocfinder.core.service.EmbeddingJobPublisher;
+import com.smartdocfinder.core.service.EmbeddingOutboxRelay;
+import com.smartdocfinder.core.service.IngestionPipeline;
+import com.smartdocfinder.core.service.LuceneIndexingQueue;
+import com.smartdocfinder.core.service.LuceneService;
+import com.smartdocfinder.core.service.RagResponseCache;
+import com.smartdocfinder.core.service.RerankerService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Read-only operational counters for the search and ingestion caches.
+ */
+@RestController
+@RequestMapping("/api/stats")
+@RequiredArgsConstructor
+public class StatsController {
+
+    private final EmbeddingClient embeddingClient;
+    private final RagResponseCache ragResponseCache;
+    private final IngestionPipeline ingestionPipeline;
+    private final LuceneIndexingQueue indexingQueue;
+    private final RerankerService rerankerService;
+    private final LuceneService luceneService;
+    private final EmbeddingJobPublisher embeddingJobPublisher;
+    private final EmbeddingOutboxRelay embeddingOutboxRelay;
+
+    @GetMapping("/embedding-cache")
+    public Map<String, Object> embeddingCache() {
+        CacheStats stats = embeddingClient.getCacheStats();
+        return Map.of(
+                "size", embeddingClient.getCacheSize(),
+                "hits", stats.hitCount(),
+                "misses", stats.missCount(),
+                "evictions", stats.evictionCount(),
+                "hitRate", stats.hitRate()
+        );
+    }
+
+    @GetMapping("/rag-cache")
+    public Map<String, Object> ragCache() {
+        CacheStats stats = ragResponseCache.getStats();
+        return Map.of(
+                "size", ragResponseCache.size(),
+                "hits", stats.hitCount(),
+                "misses", stats.missCount(),
+                "evictions", stats.evictionCount(),
+                "hitRate", stats.hitRate()
+        );
+    }
+
+    @GetMapping("/ingestion")
+    public Map<String, Object> ingestion() {
+        return Map.of(
+                "discovered", ingestionPipeline.getDiscoveredCount(),
+                "unchanged", ingestionPipeline.getUnchangedCount(),
+                "stages", ingestionPipeline.getStats()
+        );
+    }
+
+    @GetMapping("/indexing")
+    public LuceneIndexingQueue.IndexingStats indexing() {
+        return indexingQueue.getStats();
+    }
+
+    @GetMapping("/reranker")
+    public RerankerService.RerankStats reranker() {
+        return rerankerService.getStats();
+    }
+
+    @GetMapping("/search-coalescing")
+    public LuceneService.CoalescingStats searchCoalescing() {
+        return luceneService.getCoalescingStats();
+    }
+
+    @GetMapping("/embedding-jobs")
+    public EmbeddingJobPublisher.EmbeddingJobStats embeddingJobs() {
+        return embeddingJobPublisher.getStats();
+    }
+
+    @GetMapping("/embedding-outbox")
+    public EmbeddingOutboxRelay.OutboxStats embeddingOutbox() {
+        return embeddingOutboxRelay.getStats();
+    }
+}
@@ -0,0 +1,33 @@
+package com.smartdocfinder.core.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One message on the embedding jobs queue, carrying many documents.
+ * In "inline" mode each job holds its text (the whole body may additionally be gzip-compressed,
+ * signalled by the content-encoding property). In "reference" mode jobs carry no text: the worker
+ * fetches characters [contentOffset, contentOffset + contentLength) from contentUrl.
+ */
+@Getter
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class EmbeddingJobBatch {
+    private String contentMode;
+    private List<Job> jobs;
+
+    @Getter
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Job {
+        private Long documentId;
+        private String fileHash;
+        private String content;
+        private Integer contentOffset;
+        private Integer contentLength;
+        private String contentUrl;
+    }
+}
@@ -0,0 +1,19 @@
+package com.smartdocfinder.core.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.smartdocfinder.core.util.FloatVectorCodec;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A finished embedding job published by the embedding worker on the results queue.
+ */
+@Getter
+@Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class EmbeddingResultMessage {
+    private Long documentId;
+    @JsonDeserialize(using = FloatVectorCodec.VectorDeserializer.class)
+    private float[] vector;
+}
@@ -1,6 +1,7 @@
 package com.smartdocfinder.core.dto;
 
-import java.util.List;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.smartdocfinder.core.util.FloatVectorCodec;
 
 import lombok.Getter;
 import lombok.Setter;
@@ -8,6 +9,9 @@ import lombok.Setter;
 @Getter
 @Setter
 public class MultiEmbeddingResponse {
-    private List<Float> base;
-    private List<List<Float>> sub;
+    // Primitive arrays avoid boxing every dimension; both JSON arrays and base64-packed float32 are accepted.
+    @JsonDeserialize(using = FloatVectorCodec.VectorDeserializer.class)
+    private float[] base;
+    @JsonDeserialize(using = FloatVectorCodec.MatrixDeserializer.class)
+    private float[][] sub;
 }
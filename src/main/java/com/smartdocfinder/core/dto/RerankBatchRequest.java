@@ -0,0 +1,30 @@
+package com.smartdocfinder.core.dto;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Body of a batched reranker call: the candidates of several concurrent searches,
+ * each reduced to an id and the passage text the cross-encoder scores.
+ */
+@Getter
+@AllArgsConstructor
+public class RerankBatchRequest {
+    private List<QueryGroup> queries;
+
+    @Getter
+    @AllArgsConstructor
+    public static class QueryGroup {
+        private String query;
+        private List<Candidate> documents;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Candidate {
+        private String id;
+        private String text;
+    }
+}
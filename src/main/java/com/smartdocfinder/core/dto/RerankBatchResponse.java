@@ -0,0 +1,23 @@
+package com.smartdocfinder.core.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Scores from a batched reranker call; results[i] belongs to queries[i] of the request.
+ */
+@Getter @Setter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class RerankBatchResponse {
+    private List<List<ScoredCandidate>> results;
+
+    @Getter @Setter
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ScoredCandidate {
+        private String id;
+        private float score;
+    }
+}
@@ -13,13 +13,23 @@ public class SearchResult {
     private String filename;
     private String matchType;
     private String snippet;
+    private String passage; // The best-matching passage, sent to the reranker and generator
     private Float semanticScore;
     private boolean semanticOnly;
     private Float luceneScore;
     private Float hybridScore;
+    private Float rerankScore;
     private String id; // This is the Lucene document ID, not the database ID
     private String fileHash; // The hash of the file content
     private String contentType; // The MIME type of the file
     private String originalFileName; // The original file name as stored in the database
     private String filePath; // The path to the file in the filesystem
+
+    /**
+     * Field-by-field copy, for changes that must not reach whoever else holds this result.
+     */
+    public SearchResult copy() {
+        return new SearchResult(filename, matchType, snippet, passage, semanticScore, semanticOnly, luceneScore,
+                hybridScore, rerankScore, id, fileHash, contentType, originalFileName, filePath);
+    }
 }
\ No newline at end of file
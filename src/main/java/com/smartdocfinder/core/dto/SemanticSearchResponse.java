@@ -11,7 +11,7 @@ public class SemanticSearchResponse {
 
     @Getter @Setter
     public static class SemanticHit {
-        private String docId;
+        private long docId;
         private float score;
     }
 }
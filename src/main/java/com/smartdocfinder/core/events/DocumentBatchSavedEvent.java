@@ -3,7 +3,11 @@ package com.smartdocfinder.core.events;
 import java.util.List;
 
 import com.smartdocfinder.core.model.DocumentEntity;
+import com.smartdocfinder.core.service.IndexCheckpointTracker;
 
-public record DocumentBatchSavedEvent(List<DocumentEntity> savedDocuments){
+/**
+ * Documents to (re)index. The ticket is released once they are all in the index writer.
+ */
+public record DocumentBatchSavedEvent(List<DocumentEntity> savedDocuments, IndexCheckpointTracker.Ticket ticket){
 
 }
@@ -0,0 +1,7 @@
+package com.smartdocfinder.core.events;
+
+import java.util.List;
+
+public record DocumentsRemovedEvent(List<Long> documentIds) {
+
+}
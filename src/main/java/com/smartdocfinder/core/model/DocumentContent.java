@@ -0,0 +1,58 @@
+package com.smartdocfinder.core.model;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Extracted text of a document, kept out of the documents table so that hash lookups,
+ * reconciliation pages and manifest joins never drag it along. PostgreSQL compresses and
+ * stores large TEXT values out of line (TOAST) on its own. This is the only copy of the
+ * text: the index is rebuilt from it, and its passages keep just their range in it, which
+ * search results, snippets and the content endpoint read back.
+ */
+@NoArgsConstructor
+@Entity
+@Table(name = "document_contents")
+public class DocumentContent implements Persistable<Long> {
+    @Id
+    @Getter private Long documentId;
+
+    @Column(columnDefinition = "TEXT")
+    @Getter @Setter private String content;
+
+    // Ids come from the document, so tell Spring Data which rows are new to avoid a SELECT before every INSERT.
+    @Transient
+    private boolean newEntry;
+
+    public DocumentContent(Long documentId, String content) {
+        this.documentId = documentId;
+        this.content = content;
+        this.newEntry = true;
+    }
+
+    @Override
+    public Long getId() {
+        return documentId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntry;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newEntry = false;
+    }
+}
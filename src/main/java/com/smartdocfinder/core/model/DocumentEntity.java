@@ -7,7 +7,10 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -16,10 +19,16 @@ import lombok.Setter;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = @Index(name = "idx_documents_uploaded_at", columnList = "uploadedAt"))
 public class DocumentEntity {
+    public static final String ID_SEQUENCE = "documents_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled sequence ids: Hibernate reserves a block of ids per round trip, so inserts can be
+    // JDBC-batched (IDENTITY forces one INSERT ... RETURNING per row). See DocumentIdSequenceInitializer.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     @Getter @Setter private Long id;
 
     @Column(length = 1024) @Getter @Setter private String fileName;
@@ -32,8 +41,10 @@ public class DocumentEntity {
     @Column(unique = true)
     private String fileHash; 
 
+    // Extracted text travels with the entity from parsing to indexing and embedding. It is persisted
+    // separately in document_contents (see DocumentContent), so loading a document never loads its text.
     @Getter @Setter
-    @Column(columnDefinition = "TEXT")
+    @Transient
     private String content;
 }
 
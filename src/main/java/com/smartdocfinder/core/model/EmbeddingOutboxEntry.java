@@ -0,0 +1,47 @@
+package com.smartdocfinder.core.model;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * An embedding job that still has to reach the broker. Written in the same transaction as the
+ * document it refers to and deleted once the broker has confirmed the message carrying it,
+ * so a job is never lost between the database commit and the publish.
+ */
+@NoArgsConstructor
+@Entity
+@Table(name = "embedding_outbox", indexes = @Index(name = "idx_embedding_outbox_available_at", columnList = "availableAt"))
+public class EmbeddingOutboxEntry {
+    public static final String ID_SEQUENCE = "embedding_outbox_seq";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = DocumentEntity.ID_ALLOCATION_SIZE)
+    @Getter @Setter private Long id;
+
+    @Getter @Setter private Long documentId;
+    @Getter @Setter private String fileHash;
+    @Getter @Setter private int contentLength;
+    @Getter @Setter private LocalDateTime createdAt;
+    // The relay picks up rows whose time has come; claiming a row pushes this out by a lease.
+    @Getter @Setter private LocalDateTime availableAt;
+    @Getter @Setter private int attempts;
+
+    public EmbeddingOutboxEntry(DocumentEntity document) {
+        this.documentId = document.getId();
+        this.fileHash = document.getFileHash();
+        this.contentLength = document.getContent() == null ? 0 : document.getContent().length();
+        this.createdAt = LocalDateTime.now();
+        this.availableAt = this.createdAt;
+    }
+}
@@ -0,0 +1,56 @@
+package com.smartdocfinder.core.model;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * What the indexer last saw at a source path. Lets a restart skip files whose size and
+ * modification time are unchanged without reading them.
+ */
+@NoArgsConstructor
+@Entity
+@Table(name = "file_manifest", indexes = @Index(name = "idx_file_manifest_document_id", columnList = "documentId"))
+public class FileManifestEntry implements Persistable<String> {
+    @Id
+    @Column(length = 1024) @Getter @Setter private String filePath;
+    @Getter @Setter private long fileSize;
+    @Getter @Setter private long lastModified; // Epoch millis
+    @Getter @Setter private String fileHash;   // Null for files of an unsupported type
+    @Getter @Setter private Long documentId;   // Null for files of an unsupported type
+
+    // Paths are assigned ids, so tell Spring Data which rows are new to avoid a SELECT before every INSERT.
+    @Transient
+    private boolean newEntry;
+
+    public FileManifestEntry(String filePath) {
+        this.filePath = filePath;
+        this.newEntry = true;
+    }
+
+    @Override
+    public String getId() {
+        return filePath;
+    }
+
+    @Override
+    public boolean isNew() {
+        return newEntry;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newEntry = false;
+    }
+}
@@ -0,0 +1,10 @@
+package com.smartdocfinder.core.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.smartdocfinder.core.model.DocumentContent;
+
+@Repository
+public interface DocumentContentRepository extends JpaRepository<DocumentContent, Long>, DocumentContentRepositoryCustom {
+}
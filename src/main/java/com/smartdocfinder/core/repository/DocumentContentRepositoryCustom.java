@@ -0,0 +1,19 @@
+package com.smartdocfinder.core.repository;
+
+import java.util.List;
+
+public interface DocumentContentRepositoryCustom {
+
+    /**
+     * A range of a document's text, in characters as PostgreSQL counts them (code points).
+     */
+    record TextRange(long documentId, int start, int length) {}
+
+    record PassageText(String fileName, String text) {}
+
+    /**
+     * Filename and text of every range in one round trip, in the order given; null where the
+     * document no longer exists. Only the requested ranges leave the database.
+     */
+    List<PassageText> findPassages(List<TextRange> ranges);
+}
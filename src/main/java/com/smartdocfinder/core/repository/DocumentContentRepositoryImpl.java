@@ -0,0 +1,47 @@
+package com.smartdocfinder.core.repository;
+
+import java.sql.PreparedStatement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class DocumentContentRepositoryImpl implements DocumentContentRepositoryCustom {
+
+    private static final String PASSAGES_SQL = "SELECT r.ord, d.file_name, substr(c.content, r.start + 1, r.len) "
+            + "FROM unnest(?, ?, ?) WITH ORDINALITY AS r(id, start, len, ord) "
+            + "JOIN documents d ON d.id = r.id "
+            + "JOIN document_contents c ON c.document_id = r.id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DocumentContentRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<PassageText> findPassages(List<TextRange> ranges) {
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+        Long[] ids = new Long[ranges.size()];
+        Integer[] starts = new Integer[ranges.size()];
+        Integer[] lengths = new Integer[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++) {
+            ids[i] = ranges.get(i).documentId();
+            starts[i] = ranges.get(i).start();
+            lengths[i] = ranges.get(i).length();
+        }
+        PassageText[] passages = new PassageText[ranges.size()];
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(PASSAGES_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            ps.setArray(2, con.createArrayOf("integer", starts));
+            ps.setArray(3, con.createArrayOf("integer", lengths));
+            return ps;
+        }, rs -> {
+            passages[rs.getInt(1) - 1] = new PassageText(rs.getString(2), rs.getString(3));
+        });
+        return Arrays.asList(passages);
+    }
+}
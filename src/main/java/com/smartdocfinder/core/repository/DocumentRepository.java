@@ -2,8 +2,13 @@
 
 package com.smartdocfinder.core.repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
+import org.springframework.data.domain.Pageable;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -19,5 +24,27 @@ public interface DocumentRepository extends JpaRepository<DocumentEntity, Long>
 
     @Query("SELECT d.fileHash FROM DocumentEntity d WHERE d.fileHash IN :hashes")
     Set<String> findExistingHashes(@Param("hashes") Set<String> hashes);
-    
+
+    interface HashIdView {
+        Long getId();
+        String getFileHash();
+    }
+
+    @Query("SELECT d.id AS id, d.fileHash AS fileHash FROM DocumentEntity d WHERE d.fileHash IN :hashes")
+    List<HashIdView> findIdsByHashes(@Param("hashes") Set<String> hashes);
+
+    @Query("SELECT d.id FROM DocumentEntity d WHERE d.id IN :ids")
+    Set<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT MAX(d.id) FROM DocumentEntity d")
+    Long findMaxId();
+
+    // Keyset pages for startup reconciliation: rows created after the index checkpoint...
+    List<DocumentEntity> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable page);
+
+    // ...and older rows that were rewritten in place after it.
+    @Query("SELECT d FROM DocumentEntity d WHERE d.id > :afterId AND d.id <= :maxId AND d.uploadedAt >= :since ORDER BY d.id")
+    List<DocumentEntity> findRewrittenSince(@Param("afterId") Long afterId, @Param("maxId") Long maxId,
+                                            @Param("since") LocalDateTime since, Pageable page);
+
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.smartdocfinder.core.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.smartdocfinder.core.model.EmbeddingOutboxEntry;
+
+@Repository
+public interface EmbeddingOutboxRepository extends JpaRepository<EmbeddingOutboxEntry, Long> {
+
+    List<EmbeddingOutboxEntry> findByAvailableAtLessThanEqualOrderByIdAsc(LocalDateTime now, Pageable pageable);
+
+    // Claims rows for a publish attempt; they come due again when the lease runs out unless deleted first.
+    @Modifying
+    @Query("UPDATE EmbeddingOutboxEntry e SET e.availableAt = :until, e.attempts = e.attempts + 1 WHERE e.id IN :ids")
+    int lease(@Param("ids") Collection<Long> ids, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("UPDATE EmbeddingOutboxEntry e SET e.availableAt = :until WHERE e.id IN :ids")
+    int postpone(@Param("ids") Collection<Long> ids, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("DELETE FROM EmbeddingOutboxEntry e WHERE e.documentId IN :documentIds")
+    int deleteByDocumentIds(@Param("documentIds") Collection<Long> documentIds);
+}
@@ -0,0 +1,44 @@
+package com.smartdocfinder.core.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.smartdocfinder.core.model.FileManifestEntry;
+
+import jakarta.persistence.QueryHint;
+
+@Repository
+public interface FileManifestRepository extends JpaRepository<FileManifestEntry, String> {
+
+    interface ManifestRow {
+        String getFilePath();
+        long getFileSize();
+        long getLastModified();
+    }
+
+    interface ReferenceCount {
+        Long getDocumentId();
+        long getReferenceCount();
+    }
+
+    // Projection rather than entities, so streaming millions of rows does not fill the persistence context.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query("SELECT m.filePath AS filePath, m.fileSize AS fileSize, m.lastModified AS lastModified FROM FileManifestEntry m")
+    Stream<ManifestRow> streamAll();
+
+    @Query("SELECT DISTINCT m.documentId FROM FileManifestEntry m WHERE m.documentId IN :ids")
+    Set<Long> findReferencedDocumentIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT m.documentId AS documentId, COUNT(m) AS referenceCount FROM FileManifestEntry m "
+            + "WHERE m.documentId IN :ids GROUP BY m.documentId")
+    List<ReferenceCount> countReferences(@Param("ids") Collection<Long> ids);
+}
@@ -1,23 +1,70 @@
 package com.smartdocfinder.core.service;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
 
 import org.apache.tika.Tika;
 import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
 import org.springframework.stereotype.Service;
 
 @Service
 public class DocumentParserService {
-    public static String detectMediaType(byte[] data) throws IOException, TikaException {
-        Tika tika = new Tika();
-        return tika.detect(data);
 
+    // Tika detectors look at no more than the first few KB; this bounds the prefix kept in memory.
+    private static final int DETECTION_BUFFER_SIZE = 64 * 1024;
+
+    // The Tika facade is thread-safe and expensive to build (it loads every parser), so share it.
+    private static final Tika TIKA = new Tika();
+
+    /**
+     * Result of a single streaming pass over a file. Content is null when the detected type is not allowed.
+     */
+    public record ParsedContent(String mediaType, String fileHash, String content) {}
+
+    /**
+     * Detects the media type from a bounded prefix, parses through Tika's streaming API and
+     * computes the SHA-256 of the raw bytes on the way through, without ever buffering the
+     * whole file. At most maxChars characters of text are extracted.
+     * The caller owns and closes the stream.
+     */
+    public static ParsedContent parse(InputStream stream, Set<String> allowedTypes, int maxChars)
+            throws IOException, TikaException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        BufferedInputStream in = new BufferedInputStream(new DigestInputStream(stream, digest), DETECTION_BUFFER_SIZE);
+
+        String mediaType = TIKA.detect(in); // Marks and resets, so the parser sees the stream from the start
+        if (!allowedTypes.contains(mediaType)) {
+            return new ParsedContent(mediaType, null, null);
+        }
+
+        String content = TIKA.parseToString(new CloseShieldInputStream(in), new Metadata(), maxChars);
+        // Parsers may stop early (e.g. at the character cap); read the rest so the hash covers the whole file.
+        in.transferTo(OutputStream.nullOutputStream());
+        return new ParsedContent(mediaType, HexFormat.of().formatHex(digest.digest()), content);
     }
 
-    public static String extractContent(InputStream stream) throws IOException, TikaException {
-        Tika tika = new Tika();
-        String content = tika.parseToString(stream);
-        return content;
+    // Tika closes the stream it parses; keep ours open so the remainder can still be hashed.
+    private static final class CloseShieldInputStream extends FilterInputStream {
+        CloseShieldInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+        }
     }
 }
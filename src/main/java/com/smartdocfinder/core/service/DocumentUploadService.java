@@ -6,26 +6,49 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.smartdocfinder.core.constants.Constants;
 import com.smartdocfinder.core.events.DocumentBatchSavedEvent;
+import com.smartdocfinder.core.events.DocumentsRemovedEvent;
+import com.smartdocfinder.core.model.DocumentContent;
 import com.smartdocfinder.core.model.DocumentEntity;
+import com.smartdocfinder.core.model.EmbeddingOutboxEntry;
+import com.smartdocfinder.core.model.FileManifestEntry;
+import com.smartdocfinder.core.repository.DocumentContentRepository;
 import com.smartdocfinder.core.repository.DocumentRepository;
-import com.smartdocfinder.core.util.Utilities;
+import com.smartdocfinder.core.repository.EmbeddingOutboxRepository;
+import com.smartdocfinder.core.repository.FileManifestRepository;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * The individual ingestion steps (stat, read/hash/parse, persist, publish). They are used
+ * one after another by processDocumentBatch, or as separate stages by IngestionPipeline.
+ * Only the persist step runs inside a database transaction.
+ * The file manifest records the size and modification time each path had when it was last
+ * ingested, so unchanged files are skipped before they are opened.
+ */
 @Service
 public class DocumentUploadService {
 
@@ -34,90 +57,439 @@ public class DocumentUploadService {
     @Autowired
     private DocumentRepository repo;
 
-   
+    @Autowired
+    private FileManifestRepository manifestRepo;
+
+    @Autowired
+    private DocumentContentRepository contentRepo;
+
+    @Autowired
+    private EmbeddingOutboxRepository outboxRepo;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private IndexCheckpointTracker checkpointTracker;
 
     @Autowired
     private ApplicationEventPublisher eventPublisher;
 
-    // A private record to hold intermediate processing data.
-    private record ProcessedFile(
+    // Upper bound on extracted text per file; Tika stops writing once it is reached.
+    @Value("${indexing.max-extracted-chars:100000}")
+    private int maxExtractedChars;
+
+    // Paths per transaction when sweeping vanished files.
+    private static final int REMOVE_CHUNK_SIZE = 1000;
+
+    /**
+     * A file that passed the stat check: new, or its size or modification time changed.
+     */
+    public record FileCandidate(Path path, long fileSize, long lastModified) {}
+
+    /**
+     * Size and modification time the manifest holds for a path.
+     */
+    public record KnownFile(long fileSize, long lastModified) {}
+
+    // A record to hold intermediate processing data between parsing and persistence.
+    // Content and hash are null for files of an unsupported type; those are only recorded in the manifest.
+    public record ProcessedFile(
         String originalFileName, String contentType, String filePath,
-        String fileHash, String content
+        String fileHash, String content, long fileSize, long lastModified
     ) {}
 
-    @Transactional // Ensures the entire batch operation is a single transaction
+    /**
+     * Outcome of a persist step: documents to (re)index and ids whose last source file is gone.
+     * The ticket holds the index checkpoint back until the saved documents have been indexed.
+     */
+    public record PersistResult(List<DocumentEntity> saved, List<Long> removedIds, IndexCheckpointTracker.Ticket ticket) {
+        public static final PersistResult EMPTY = new PersistResult(List.of(), List.of(), null);
+
+        public boolean isEmpty() {
+            return saved.isEmpty() && removedIds.isEmpty();
+        }
+    }
+
     public void processDocumentBatch(List<Path> fileBatch) {
         if (fileBatch == null || fileBatch.isEmpty()) {
             return;
         }
 
-        // STEP 1: Pre-process all files in the batch (CPU/IO-bound work).
-        // This extracts content and calculates hashes for all files first.
-        List<ProcessedFile> processedFiles = fileBatch.stream().map(path -> {
-            try (InputStream in = Files.newInputStream(path)) {
-                byte[] fileBytes = in.readAllBytes();
-                String mediaType = DocumentParserService.detectMediaType(fileBytes);
-                if (!Constants.ALLOWED_TYPES.contains(mediaType)) return null; // Skip unsupported
-
-                String content = DocumentParserService.extractContent(new ByteArrayInputStream(fileBytes));
-                String fileHash = Utilities.computeFileHash(fileBytes);
-
-                return new ProcessedFile(
-                    path.getFileName().toString(),
-                    Files.probeContentType(path),
-                    path.toString(),
-                    fileHash,
-                    content
-                );
-            } catch (Exception e) {
-                logger.warn("Failed to pre-process file: {}. Skipping.", path.getFileName(), e);
-                return null;
+        // STEP 1: Stat the files and drop the ones the manifest says are unchanged.
+        Map<String, KnownFile> known = new HashMap<>();
+        Set<String> keys = fileBatch.stream().map(DocumentUploadService::manifestKey).collect(Collectors.toSet());
+        for (FileManifestEntry entry : manifestRepo.findAllById(keys)) {
+            known.put(entry.getFilePath(), new KnownFile(entry.getFileSize(), entry.getLastModified()));
+        }
+        List<FileCandidate> candidates = new ArrayList<>();
+        for (Path path : fileBatch) {
+            try {
+                FileCandidate candidate = statFile(path, Files.readAttributes(path, BasicFileAttributes.class), known);
+                if (candidate != null) {
+                    candidates.add(candidate);
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to stat file: {}. Skipping.", path.getFileName(), e);
             }
-        }).filter(java.util.Objects::nonNull).collect(Collectors.toList());
+        }
+
+        // STEP 2: Pre-process the remaining files (CPU/IO-bound work, no DB connection held).
+        // This extracts content and calculates hashes for all files first.
+        List<ProcessedFile> processedFiles = candidates.stream()
+                .map(this::parseFile)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
 
         if (processedFiles.isEmpty()) {
-            logger.info("No supported files to process in this batch.");
+            logger.info("No new or changed files to process in this batch.");
             return;
         }
 
-        // STEP 2: Batch Deduplication (One DB Call)
-        // Collect all hashes and check for their existence in a single query.
-        Set<String> hashesToCheck = processedFiles.stream()
-                .map(ProcessedFile::fileHash)
-                .collect(Collectors.toSet());
-        Set<String> existingHashes = repo.findExistingHashes(hashesToCheck);
-
-        // STEP 3: Filter out duplicates and prepare entities for saving.
-        List<DocumentEntity> documentsToSave = new ArrayList<>();
-        for (ProcessedFile pf : processedFiles) {
-            if (!existingHashes.contains(pf.fileHash())) {
-                DocumentEntity doc = new DocumentEntity();
-                doc.setFileName(pf.originalFileName());
-                doc.setFileType(pf.contentType());
-                doc.setUploadedAt(LocalDateTime.now());
-                doc.setFileHash(pf.fileHash());
-                doc.setContent(pf.content());
-                doc.setFilePath(pf.filePath());
-                documentsToSave.add(doc);
+        // STEP 3: Deduplicate, save and update the manifest in one short transaction.
+        PersistResult result = persistBatch(processedFiles);
+
+        // STEP 4: Hand the committed changes to the indexing and embedding listeners.
+        publish(result);
+    }
+
+    /**
+     * Loads the whole manifest as path -> (size, mtime). Rows are streamed as projections,
+     * so even millions of entries load in seconds without going through the persistence context.
+     */
+    public Map<String, KnownFile> loadManifestSnapshot() {
+        Map<String, KnownFile> snapshot = new HashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<FileManifestRepository.ManifestRow> rows = manifestRepo.streamAll()) {
+                rows.forEach(row -> snapshot.put(row.getFilePath(), new KnownFile(row.getFileSize(), row.getLastModified())));
+            }
+        });
+        logger.info("Loaded file manifest with {} entries.", snapshot.size());
+        return snapshot;
+    }
+
+    /**
+     * Stat step: compares a file's attributes with the manifest and removes the path from
+     * the snapshot, so whatever is left after a full walk has vanished from disk.
+     * Returns null when the file is unchanged and does not need to be read at all.
+     */
+    public FileCandidate statFile(Path path, BasicFileAttributes attrs, Map<String, KnownFile> snapshot) {
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        KnownFile known = snapshot.remove(manifestKey(path));
+        if (known != null && known.fileSize() == size && known.lastModified() == lastModified) {
+            return null;
+        }
+        return new FileCandidate(path, size, lastModified);
+    }
+
+    /**
+     * Read/hash/parse step: one streaming pass that detects the type, extracts the text and
+     * hashes the file, so memory per file stays bounded no matter how large it is.
+     * Returns null for unparseable files, which are then retried on the next run.
+     */
+    public ProcessedFile parseFile(FileCandidate candidate) {
+        Path path = candidate.path();
+        try (InputStream in = Files.newInputStream(path)) {
+            DocumentParserService.ParsedContent parsed =
+                    DocumentParserService.parse(in, Constants.ALLOWED_TYPES, maxExtractedChars);
+            boolean supported = parsed.content() != null;
+
+            return new ProcessedFile(
+                path.getFileName().toString(),
+                supported ? Files.probeContentType(path) : parsed.mediaType(),
+                manifestKey(path),
+                parsed.fileHash(),
+                parsed.content(),
+                candidate.fileSize(),
+                candidate.lastModified()
+            );
+        } catch (Exception e) {
+            logger.warn("Failed to pre-process file: {}. Skipping.", path.getFileName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Loads the stored text of documents whose index entries were lost, for re-indexing them.
+     * Rows without stored text (written while the text was kept only in the index) are
+     * re-extracted from their source files and stored. Returns the documents that have their text again.
+     */
+    public List<DocumentEntity> loadContents(List<DocumentEntity> docs) {
+        Map<Long, String> stored = new HashMap<>();
+        for (DocumentContent content : contentRepo.findAllById(docs.stream().map(DocumentEntity::getId).toList())) {
+            stored.put(content.getDocumentId(), content.getContent());
+        }
+        List<DocumentEntity> loaded = new ArrayList<>(docs.size());
+        List<DocumentContent> extracted = new ArrayList<>();
+        for (DocumentEntity doc : docs) {
+            String content = stored.get(doc.getId());
+            if (content != null) {
+                doc.setContent(content);
+                loaded.add(doc);
+            } else if (reloadContent(doc)) {
+                loaded.add(doc);
+                extracted.add(new DocumentContent(doc.getId(), doc.getContent()));
             }
         }
+        // Search reads passage text from document_contents, so it must be there before the passages are indexed.
+        contentRepo.saveAll(extracted);
+        return loaded;
+    }
 
-        if (documentsToSave.isEmpty()) {
+    /**
+     * Up to length characters of a document's stored text, starting at offset, or null if the
+     * document has no stored text.
+     */
+    public String readContent(long id, int offset, int length) {
+        return contentRepo.findById(id)
+                .map(DocumentContent::getContent)
+                .map(text -> {
+                    int from = Math.min(offset, text.length());
+                    return text.substring(from, (int) Math.min((long) from + length, text.length()));
+                })
+                .orElse(null);
+    }
+
+    /**
+     * Re-extracts the text of a stored document from its source file. Returns false if the file
+     * is gone or no longer has the stored hash; the manifest scan takes care of those.
+     */
+    private boolean reloadContent(DocumentEntity doc) {
+        if (doc.getFilePath() == null) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(Path.of(doc.getFilePath()))) {
+            DocumentParserService.ParsedContent parsed =
+                    DocumentParserService.parse(in, Constants.ALLOWED_TYPES, maxExtractedChars);
+            if (parsed.content() == null || !parsed.fileHash().equals(doc.getFileHash())) {
+                return false;
+            }
+            doc.setContent(parsed.content());
+            return true;
+        } catch (Exception e) {
+            logger.warn("Could not reload content of document ID {} from {}.", doc.getId(), doc.getFilePath(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Persist step: batch deduplication, document saves and manifest upserts in a single
+     * transaction that only covers the database work.
+     * A changed file keeps its document id when no other path shares the document, so
+     * re-indexing replaces the Lucene entry through updateDocument. Documents no path
+     * refers to any more are deleted and reported in the result.
+     */
+    public PersistResult persistBatch(List<ProcessedFile> processedFiles) {
+        // Taken before any row is written, so the ids this batch gets are all above the ticket's floor.
+        IndexCheckpointTracker.Ticket ticket = checkpointTracker.begin();
+        PersistResult result;
+        try {
+            result = persistInTransaction(processedFiles, ticket);
+        } catch (RuntimeException e) {
+            ticket.release();
+            throw e;
+        }
+
+        if (result == null || result.isEmpty()) {
+            ticket.release();
             logger.info("All files in this batch were already indexed.");
-            return;
+            return PersistResult.EMPTY;
+        }
+        if (result.saved().isEmpty()) {
+            ticket.release();
         }
+        logger.info("Saved {} new or changed documents and removed {} orphaned ones.",
+                result.saved().size(), result.removedIds().size());
+        return result;
+    }
+
+    private PersistResult persistInTransaction(List<ProcessedFile> processedFiles, IndexCheckpointTracker.Ticket ticket) {
+        return transactionTemplate.execute(status -> {
+            // Collect all hashes and resolve the ones that are already stored in a single query.
+            Set<String> hashesToCheck = processedFiles.stream()
+                    .map(ProcessedFile::fileHash)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            Map<String, Long> idsByHash = new HashMap<>();
+            if (!hashesToCheck.isEmpty()) {
+                for (DocumentRepository.HashIdView view : repo.findIdsByHashes(hashesToCheck)) {
+                    idsByHash.put(view.getFileHash(), view.getId());
+                }
+            }
+
+            Map<String, FileManifestEntry> entries = new LinkedHashMap<>();
+            for (FileManifestEntry entry : manifestRepo.findAllById(
+                    processedFiles.stream().map(ProcessedFile::filePath).collect(Collectors.toSet()))) {
+                entries.put(entry.getFilePath(), entry);
+            }
+
+            // Reference counts and rows of the documents these paths point at now, loaded once for the
+            // whole batch; the counts are kept current as the loop below relinks paths.
+            Set<Long> previousIds = entries.values().stream()
+                    .map(FileManifestEntry::getDocumentId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            Map<Long, Long> referenceCounts = new HashMap<>();
+            Map<Long, DocumentEntity> previousDocuments = new HashMap<>();
+            if (!previousIds.isEmpty()) {
+                for (FileManifestRepository.ReferenceCount count : manifestRepo.countReferences(previousIds)) {
+                    referenceCounts.put(count.getDocumentId(), count.getReferenceCount());
+                }
+                for (DocumentEntity doc : repo.findAllById(previousIds)) {
+                    previousDocuments.put(doc.getId(), doc);
+                }
+            }
 
-        // STEP 4: Batch Save (One DB Call)
-        // Save all new document entities in a single transaction.
-        List<DocumentEntity> savedDocs = repo.saveAll(documentsToSave);
+            // Documents created in this batch, by hash, so repeats inside the batch share one row.
+            Map<String, DocumentEntity> pendingByHash = new HashMap<>();
+            Map<FileManifestEntry, DocumentEntity> pendingLinks = new HashMap<>();
+            List<DocumentEntity> documentsToSave = new ArrayList<>();
+            Set<Long> orphanCandidates = new HashSet<>();
 
-        logger.info("Successfully saved {} new documents to the database.", savedDocs.size());
+            for (ProcessedFile pf : processedFiles) {
+                FileManifestEntry entry = entries.computeIfAbsent(pf.filePath(), FileManifestEntry::new);
+                Long previousId = entry.getDocumentId();
+                Long documentId = null;
 
-        // STEP 5: ✅ Publish a single event containing all the saved documents
-        // The loop is now gone from this service.
-        if (!savedDocs.isEmpty()) {
-            eventPublisher.publishEvent(new DocumentBatchSavedEvent(savedDocs));
+                if (pf.content() != null) {
+                    documentId = idsByHash.get(pf.fileHash());
+                    if (documentId == null && !pendingByHash.containsKey(pf.fileHash())) {
+                        DocumentEntity doc = previousId != null && referenceCounts.getOrDefault(previousId, 0L) == 1
+                                ? previousDocuments.getOrDefault(previousId, new DocumentEntity())
+                                : new DocumentEntity();
+                        doc.setFileName(pf.originalFileName());
+                        doc.setFileType(pf.contentType());
+                        doc.setUploadedAt(LocalDateTime.now());
+                        doc.setFileHash(pf.fileHash());
+                        doc.setContent(pf.content());
+                        doc.setFilePath(pf.filePath());
+                        doc.setFileSize(pf.fileSize());
+                        documentsToSave.add(doc);
+                        pendingByHash.put(pf.fileHash(), doc);
+                        if (doc.getId() != null) {
+                            // Updated in place; later paths with the same content link to it directly.
+                            idsByHash.put(pf.fileHash(), doc.getId());
+                            documentId = doc.getId();
+                        }
+                    }
+                    if (documentId == null) {
+                        pendingLinks.put(entry, pendingByHash.get(pf.fileHash()));
+                    }
+                }
+
+                if (previousId != null && !previousId.equals(documentId)) {
+                    orphanCandidates.add(previousId);
+                    referenceCounts.merge(previousId, -1L, Long::sum);
+                }
+                if (documentId != null && !documentId.equals(previousId)) {
+                    referenceCounts.merge(documentId, 1L, Long::sum);
+                }
+                entry.setFileSize(pf.fileSize());
+                entry.setLastModified(pf.lastModified());
+                entry.setFileHash(pf.fileHash());
+                entry.setDocumentId(documentId);
+            }
+
+            List<DocumentEntity> saved = documentsToSave.isEmpty() ? List.of() : repo.saveAll(documentsToSave);
+            saveContents(saved);
+            pendingLinks.forEach((entry, doc) -> entry.setDocumentId(doc.getId()));
+            manifestRepo.saveAll(entries.values());
+            // Embedding jobs commit with their documents; EmbeddingOutboxRelay takes them from here.
+            outboxRepo.saveAll(saved.stream().map(EmbeddingOutboxEntry::new).toList());
+
+            List<Long> removedIds = deleteUnreferenced(orphanCandidates);
+            checkpointTracker.observe(saved.stream().map(DocumentEntity::getId).toList());
+            return new PersistResult(saved, removedIds, ticket);
+        });
+    }
+
+    /**
+     * Sweeps paths that are in the manifest but no longer on disk: their manifest rows go,
+     * along with every document no remaining path refers to. Runs in chunks so each
+     * transaction stays short, and publishes the removed ids for the index listener.
+     */
+    public int removePaths(Collection<String> vanishedPaths) {
+        List<String> paths = new ArrayList<>(vanishedPaths);
+        int removed = 0;
+        for (int from = 0; from < paths.size(); from += REMOVE_CHUNK_SIZE) {
+            List<String> chunk = paths.subList(from, Math.min(paths.size(), from + REMOVE_CHUNK_SIZE));
+            List<Long> removedIds = transactionTemplate.execute(status -> {
+                Set<Long> orphanCandidates = new LinkedHashSet<>();
+                List<FileManifestEntry> entries = manifestRepo.findAllById(chunk);
+                for (FileManifestEntry entry : entries) {
+                    if (entry.getDocumentId() != null) {
+                        orphanCandidates.add(entry.getDocumentId());
+                    }
+                }
+                manifestRepo.deleteAllInBatch(entries);
+                return deleteUnreferenced(orphanCandidates);
+            });
+            if (removedIds != null && !removedIds.isEmpty()) {
+                removed += removedIds.size();
+                eventPublisher.publishEvent(new DocumentsRemovedEvent(removedIds));
+            }
+        }
+        if (!paths.isEmpty()) {
+            logger.info("Removed {} vanished files and {} documents that no longer have a source file.",
+                    paths.size(), removed);
+        }
+        return removed;
+    }
+
+    // Documents updated in place already have a content row; new ones are inserted without a lookup.
+    private void saveContents(List<DocumentEntity> saved) {
+        if (saved.isEmpty()) {
+            return;
+        }
+        Map<Long, DocumentContent> existing = new HashMap<>();
+        for (DocumentContent content : contentRepo.findAllById(saved.stream().map(DocumentEntity::getId).toList())) {
+            existing.put(content.getDocumentId(), content);
+        }
+        List<DocumentContent> contents = new ArrayList<>(saved.size());
+        for (DocumentEntity doc : saved) {
+            DocumentContent content = existing.get(doc.getId());
+            if (content == null) {
+                contents.add(new DocumentContent(doc.getId(), doc.getContent()));
+            } else {
+                content.setContent(doc.getContent());
+                contents.add(content);
+            }
         }
+        contentRepo.saveAll(contents);
+    }
+
+    // Must run inside the caller's transaction, after its manifest changes.
+    private List<Long> deleteUnreferenced(Set<Long> candidates) {
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> orphans = new HashSet<>(candidates);
+        orphans.removeAll(manifestRepo.findReferencedDocumentIds(candidates));
+        if (orphans.isEmpty()) {
+            return List.of();
+        }
+        outboxRepo.deleteByDocumentIds(orphans);
+        contentRepo.deleteAllByIdInBatch(orphans);
+        repo.deleteAllByIdInBatch(orphans);
+        return new ArrayList<>(orphans);
+    }
+
+    /**
+     * Index/publish step: publishes one event with the saved documents and one with the
+     * removed ids. It runs after the persist transaction has committed, so listeners see durable rows.
+     */
+    public void publish(PersistResult result) {
+        if (!result.saved().isEmpty()) {
+            eventPublisher.publishEvent(new DocumentBatchSavedEvent(result.saved(), result.ticket()));
+        }
+        if (!result.removedIds().isEmpty()) {
+            eventPublisher.publishEvent(new DocumentsRemovedEvent(result.removedIds()));
+        }
+    }
 
+    // The same file must map to the same key no matter how the walk root was spelled.
+    static String manifestKey(Path path) {
+        return path.toAbsolutePath().normalize().toString();
     }
-}
\ No newline at end of file
+}
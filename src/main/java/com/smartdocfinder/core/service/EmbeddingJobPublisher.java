@@ -0,0 +1,159 @@
+package com.smartdocfinder.core.service;
+
+import com.smartdocfinder.core.config.RabbitMQConfig;
+import com.smartdocfinder.core.dto.EmbeddingJobBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.postprocessor.GZipPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends embedding jobs to the broker, many documents per message.
+ * Depending on content-mode the text travels inline, inline with the whole body gzip-compressed,
+ * or not at all (reference mode: the worker fetches it from /api/files/documents/{id}/content).
+ * Publisher confirms are handled asynchronously: publish returns once the message is written
+ * and its future completes when the broker confirms it. At most max-unconfirmed messages may be
+ * outstanding, so sends are pipelined but a slow broker still pushes back on the sender.
+ * Retrying is up to the caller (see EmbeddingOutboxRelay).
+ */
+@Component
+public class EmbeddingJobPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingJobPublisher.class);
+    private static final GZipPostProcessor GZIP = new GZipPostProcessor();
+
+    enum ContentMode { INLINE, GZIP, REFERENCE }
+
+    /**
+     * Totals since startup, for the stats endpoint.
+     */
+    public record EmbeddingJobStats(String contentMode, long messages, long jobs, long confirmedJobs,
+                                    long failedJobs, int unconfirmedMessages) {}
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ContentMode contentMode;
+    private final int batchSize;
+    private final long maxBatchChars;
+    private final String contentUrlTemplate;
+    private final long confirmTimeoutMs;
+    private final int maxUnconfirmed;
+    private final Semaphore unconfirmed;
+
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong jobs = new AtomicLong();
+    private final AtomicLong confirmedJobs = new AtomicLong();
+    private final AtomicLong failedJobs = new AtomicLong();
+
+    public EmbeddingJobPublisher(RabbitTemplate rabbitTemplate,
+                                 @Value("${embedding.jobs.content-mode:gzip}") String contentMode,
+                                 @Value("${embedding.jobs.batch-size:64}") int batchSize,
+                                 @Value("${embedding.jobs.max-batch-chars:4000000}") long maxBatchChars,
+                                 @Value("${embedding.jobs.content-base-url:http://core:8080/docsearch}") String contentBaseUrl,
+                                 @Value("${embedding.jobs.confirm-timeout-ms:30000}") long confirmTimeoutMs,
+                                 @Value("${embedding.jobs.max-unconfirmed:16}") int maxUnconfirmed) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.contentMode = ContentMode.valueOf(contentMode.trim().toUpperCase(Locale.ROOT));
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatchChars = maxBatchChars;
+        this.contentUrlTemplate = contentBaseUrl + "/api/files/documents/%d/content";
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        this.maxUnconfirmed = Math.max(1, maxUnconfirmed);
+        this.unconfirmed = new Semaphore(this.maxUnconfirmed);
+    }
+
+    /**
+     * Whether jobs must carry the document text (inline and gzip modes).
+     */
+    public boolean needsContent() {
+        return contentMode != ContentMode.REFERENCE;
+    }
+
+    public EmbeddingJobBatch.Job toJob(long documentId, String fileHash, String content, int contentLength) {
+        if (contentMode == ContentMode.REFERENCE) {
+            return new EmbeddingJobBatch.Job(documentId, fileHash, null, 0, contentLength,
+                    String.format(contentUrlTemplate, documentId));
+        }
+        return new EmbeddingJobBatch.Job(documentId, fileHash, content, null, content.length(), null);
+    }
+
+    /**
+     * Splits jobs into message-sized batches: at most batch-size jobs and, where possible,
+     * max-batch-chars of inline text each.
+     */
+    public List<List<EmbeddingJobBatch.Job>> split(List<EmbeddingJobBatch.Job> allJobs) {
+        List<List<EmbeddingJobBatch.Job>> batches = new ArrayList<>();
+        List<EmbeddingJobBatch.Job> current = new ArrayList<>();
+        long chars = 0;
+        for (EmbeddingJobBatch.Job job : allJobs) {
+            long jobChars = job.getContent() == null ? 0 : job.getContent().length();
+            if (!current.isEmpty() && (current.size() >= batchSize || chars + jobChars > maxBatchChars)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                chars = 0;
+            }
+            current.add(job);
+            chars += jobChars;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Sends one message with the given jobs. Blocks while max-unconfirmed messages are outstanding.
+     * The returned future completes when the broker acks the message, and fails on a nack, on a
+     * send error, or if no confirm arrives within confirm-timeout-ms.
+     */
+    public CompletableFuture<Void> publish(List<EmbeddingJobBatch.Job> batch) throws InterruptedException {
+        unconfirmed.acquire();
+        String mode = contentMode == ContentMode.REFERENCE ? "reference" : "inline";
+        EmbeddingJobBatch message = new EmbeddingJobBatch(mode, batch);
+        CorrelationData correlation = new CorrelationData();
+        try {
+            if (contentMode == ContentMode.GZIP) {
+                rabbitTemplate.convertAndSend("", RabbitMQConfig.QUEUE_NAME, message, GZIP, correlation);
+            } else {
+                rabbitTemplate.convertAndSend("", RabbitMQConfig.QUEUE_NAME, message, correlation);
+            }
+        } catch (AmqpException e) {
+            unconfirmed.release();
+            failedJobs.addAndGet(batch.size());
+            return CompletableFuture.failedFuture(e);
+        }
+        messages.incrementAndGet();
+        jobs.addAndGet(batch.size());
+        logger.debug("Published {} embedding jobs ({} mode).", batch.size(), contentMode);
+
+        // A missing confirm counts as a nack after the timeout.
+        return correlation.getFuture().copy()
+                .orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                .handle((confirm, error) -> {
+                    unconfirmed.release();
+                    if (error == null && confirm.isAck()) {
+                        confirmedJobs.addAndGet(batch.size());
+                        return null;
+                    }
+                    failedJobs.addAndGet(batch.size());
+                    throw new IllegalStateException("Embedding job message not confirmed: "
+                            + (error != null ? error : confirm.getReason()));
+                });
+    }
+
+    public EmbeddingJobStats getStats() {
+        return new EmbeddingJobStats(contentMode.name().toLowerCase(Locale.ROOT), messages.get(), jobs.get(),
+                confirmedJobs.get(), failedJobs.get(), maxUnconfirmed - unconfirmed.availablePermits());
+    }
+}
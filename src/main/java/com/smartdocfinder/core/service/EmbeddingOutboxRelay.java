@@ -0,0 +1,314 @@
+package com.smartdocfinder.core.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.smartdocfinder.core.dto.EmbeddingJobBatch;
+import com.smartdocfinder.core.model.DocumentContent;
+import com.smartdocfinder.core.model.DocumentEntity;
+import com.smartdocfinder.core.model.EmbeddingOutboxEntry;
+import com.smartdocfinder.core.repository.DocumentContentRepository;
+import com.smartdocfinder.core.repository.EmbeddingOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the embedding outbox to the broker on a background thread, so ingestion never waits
+ * on RabbitMQ. Each pass claims due rows (pushing their availableAt out by a lease), builds
+ * job messages and publishes them back to back through EmbeddingJobPublisher; a row is deleted
+ * only once the broker has confirmed the message that carried it. Confirms are handed back to the
+ * relay thread, which does the database work, so broker callback threads never block on JDBC.
+ * Rows of a failed message simply come due again when their lease runs out, with a backoff that
+ * grows per attempt. In inline and gzip modes the text comes from the recently saved documents
+ * handed over by offerContent, or else from document_contents; rows whose document has no stored
+ * text are postponed with the same growing backoff.
+ */
+@Component
+public class EmbeddingOutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingOutboxRelay.class);
+
+    private final EmbeddingOutboxRepository outboxRepository;
+    private final EmbeddingJobPublisher publisher;
+    private final DocumentContentRepository contentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long pollIntervalMs;
+    private final int claimSize;
+    private final long leaseMs;
+    private final long retryBackoffMs;
+    private final long maxRetryBackoffMs;
+    private final long notIndexedDelayMs;
+
+    // Text of documents saved moments ago, so inline jobs need not wait for the index to catch up.
+    // Bounded and expiring: rows that are deleted or postponed never come back to claim their entry.
+    private final Cache<Long, String> hotContent;
+
+    // Broker confirms (and failures), handled on the relay thread.
+    private record Confirmation(List<Long> rowIds, List<Long> documentIds, int attempts, Throwable error) {}
+    private final Queue<Confirmation> confirmations = new ConcurrentLinkedQueue<>();
+
+    private final Semaphore wakeups = new Semaphore(0);
+    private volatile boolean running;
+    private Thread relayThread;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong relayed = new AtomicLong();
+    private final AtomicLong postponed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Totals since startup, for the stats endpoint.
+     */
+    public record OutboxStats(long pending, long claimed, long relayed, long postponed, long failed) {}
+
+    public EmbeddingOutboxRelay(EmbeddingOutboxRepository outboxRepository,
+                                EmbeddingJobPublisher publisher,
+                                DocumentContentRepository contentRepository,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${embedding.outbox.poll-interval-ms:1000}") long pollIntervalMs,
+                                @Value("${embedding.outbox.claim-size:500}") int claimSize,
+                                @Value("${embedding.outbox.lease-ms:60000}") long leaseMs,
+                                @Value("${embedding.outbox.retry-backoff-ms:2000}") long retryBackoffMs,
+                                @Value("${embedding.outbox.max-retry-backoff-ms:300000}") long maxRetryBackoffMs,
+                                @Value("${embedding.outbox.not-indexed-delay-ms:2000}") long notIndexedDelayMs,
+                                @Value("${embedding.outbox.hot-content-max-chars:20000000}") long maxHotContentChars,
+                                @Value("${embedding.outbox.hot-content-ttl-sec:600}") long hotContentTtlSec) {
+        this.outboxRepository = outboxRepository;
+        this.publisher = publisher;
+        this.contentRepository = contentRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.pollIntervalMs = pollIntervalMs;
+        this.claimSize = Math.max(1, claimSize);
+        this.leaseMs = leaseMs;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxRetryBackoffMs = maxRetryBackoffMs;
+        this.notIndexedDelayMs = notIndexedDelayMs;
+        this.hotContent = CacheBuilder.newBuilder()
+                .maximumWeight(maxHotContentChars)
+                .weigher((Long id, String content) -> content.length())
+                .expireAfterWrite(hotContentTtlSec, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (relayThread != null) {
+            return;
+        }
+        running = true;
+        relayThread = new Thread(this::relayLoop, "embedding-outbox-relay");
+        relayThread.setDaemon(true);
+        relayThread.start();
+    }
+
+    /**
+     * Called after a batch of documents has committed: remembers their text (within a memory
+     * budget) and wakes the relay so their jobs go out without waiting for the next poll.
+     */
+    public void offerContent(List<DocumentEntity> documents) {
+        if (publisher.needsContent()) {
+            for (DocumentEntity doc : documents) {
+                if (doc.getContent() != null) {
+                    hotContent.put(doc.getId(), doc.getContent());
+                }
+            }
+        }
+        wakeups.release();
+    }
+
+    private void relayLoop() {
+        while (running) {
+            try {
+                wakeups.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                wakeups.drainPermits();
+                handleConfirmations();
+                // Keep going while there is a backlog.
+                int claimedRows;
+                do {
+                    claimedRows = relayOnce();
+                    handleConfirmations();
+                } while (running && claimedRows == claimSize);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Embedding outbox relay pass failed.", e);
+            }
+        }
+    }
+
+    /**
+     * Claims and publishes one page of due rows. Returns how many rows were claimed.
+     */
+    private int relayOnce() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        List<EmbeddingOutboxEntry> rows = transactionTemplate.execute(status -> {
+            List<EmbeddingOutboxEntry> due = outboxRepository
+                    .findByAvailableAtLessThanEqualOrderByIdAsc(now, PageRequest.of(0, claimSize));
+            if (!due.isEmpty()) {
+                outboxRepository.lease(due.stream().map(EmbeddingOutboxEntry::getId).toList(),
+                        now.plus(leaseMs, ChronoUnit.MILLIS));
+            }
+            return due;
+        });
+        if (rows == null || rows.isEmpty()) {
+            return 0;
+        }
+        claimed.addAndGet(rows.size());
+
+        Map<Long, List<Long>> rowIdsByDocument = new HashMap<>();
+        List<EmbeddingJobBatch.Job> jobs = new ArrayList<>();
+        List<EmbeddingOutboxEntry> notIndexed = new ArrayList<>();
+        Map<Long, String> contents = publisher.needsContent() ? loadContents(rows) : Map.of();
+        for (EmbeddingOutboxEntry row : rows) {
+            List<Long> rowIds = rowIdsByDocument.computeIfAbsent(row.getDocumentId(), id -> new ArrayList<>());
+            rowIds.add(row.getId());
+            if (rowIds.size() > 1) {
+                continue; // One job per document is enough
+            }
+            String content = null;
+            if (publisher.needsContent()) {
+                content = contents.get(row.getDocumentId());
+                if (content == null) {
+                    notIndexed.add(row);
+                    continue;
+                }
+            }
+            jobs.add(publisher.toJob(row.getDocumentId(), row.getFileHash(), content, row.getContentLength()));
+        }
+        if (!notIndexed.isEmpty()) {
+            postpone(notIndexed);
+        }
+
+        Map<Long, Integer> attemptsByRow = new HashMap<>();
+        for (EmbeddingOutboxEntry row : rows) {
+            attemptsByRow.put(row.getId(), row.getAttempts() + 1); // The lease counted this attempt
+        }
+        for (List<EmbeddingJobBatch.Job> batch : publisher.split(jobs)) {
+            List<Long> rowIds = new ArrayList<>();
+            for (EmbeddingJobBatch.Job job : batch) {
+                rowIds.addAll(rowIdsByDocument.get(job.getDocumentId()));
+            }
+            List<Long> documentIds = batch.stream().map(EmbeddingJobBatch.Job::getDocumentId).toList();
+            int attempts = rowIds.stream().mapToInt(attemptsByRow::get).max().orElse(1);
+            // Pipelined: the next message goes out without waiting for this one's confirm.
+            CompletableFuture<Void> confirmed = publisher.publish(batch);
+            confirmed.whenComplete((ignored, error) -> {
+                confirmations.add(new Confirmation(rowIds, documentIds, attempts, error));
+                wakeups.release();
+            });
+        }
+        return rows.size();
+    }
+
+    private void handleConfirmations() {
+        List<Long> relayedRows = new ArrayList<>();
+        Confirmation confirmation;
+        while ((confirmation = confirmations.poll()) != null) {
+            if (confirmation.error() == null) {
+                relayedRows.addAll(confirmation.rowIds());
+                hotContent.invalidateAll(confirmation.documentIds());
+            } else {
+                // The lease is the retry timer; stretch it by the backoff for this attempt.
+                failed.addAndGet(confirmation.rowIds().size());
+                logger.warn("Embedding job message for {} documents failed; it will be retried.",
+                        confirmation.documentIds().size(), confirmation.error());
+                retryLater(confirmation.rowIds(), confirmation.attempts());
+            }
+        }
+        if (!relayedRows.isEmpty()) {
+            outboxRepository.deleteAllByIdInBatch(relayedRows);
+            relayed.addAndGet(relayedRows.size());
+        }
+    }
+
+    // Recently saved text from the cache, the rest from document_contents in one query.
+    private Map<Long, String> loadContents(List<EmbeddingOutboxEntry> rows) {
+        Map<Long, String> contents = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (EmbeddingOutboxEntry row : rows) {
+            String content = hotContent.getIfPresent(row.getDocumentId());
+            if (content != null) {
+                contents.put(row.getDocumentId(), content);
+            } else {
+                missing.add(row.getDocumentId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            try {
+                for (DocumentContent content : contentRepository.findAllById(missing)) {
+                    contents.put(content.getDocumentId(), content.getContent());
+                }
+            } catch (Exception e) {
+                logger.warn("Could not read the text of {} documents.", missing.size(), e);
+            }
+        }
+        return contents;
+    }
+
+    // A document that never gets indexed (e.g. dead-lettered) backs off instead of being polled every few seconds.
+    private void postpone(List<EmbeddingOutboxEntry> rows) {
+        postponed.addAndGet(rows.size());
+        Map<Long, List<Long>> rowIdsByDelay = new HashMap<>();
+        for (EmbeddingOutboxEntry row : rows) {
+            rowIdsByDelay.computeIfAbsent(backoffMs(notIndexedDelayMs, row.getAttempts() + 1), d -> new ArrayList<>())
+                    .add(row.getId());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> rowIdsByDelay.forEach((delayMs, rowIds) ->
+                outboxRepository.postpone(rowIds, now.plus(delayMs, ChronoUnit.MILLIS))));
+    }
+
+    private long backoffMs(long baseMs, int attempts) {
+        return Math.min(maxRetryBackoffMs, baseMs << Math.min(Math.max(attempts - 1, 0), 20));
+    }
+
+    private void retryLater(List<Long> rowIds, int attempts) {
+        long delayMs = backoffMs(retryBackoffMs, attempts);
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    outboxRepository.postpone(rowIds, LocalDateTime.now().plus(delayMs, ChronoUnit.MILLIS)));
+        } catch (RuntimeException e) {
+            logger.warn("Could not reschedule {} outbox rows; they come due when their lease expires.", rowIds.size(), e);
+        }
+    }
+
+    public OutboxStats getStats() {
+        return new OutboxStats(outboxRepository.count(), claimed.get(), relayed.get(), postponed.get(), failed.get());
+    }
+
+    @PreDestroy
+    private synchronized void stop() throws InterruptedException {
+        running = false;
+        if (relayThread != null) {
+            relayThread.interrupt();
+            relayThread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        try {
+            handleConfirmations();
+        } catch (RuntimeException e) {
+            logger.warn("Could not record the last embedding job confirms; those rows will be relayed again.", e);
+        }
+    }
+}
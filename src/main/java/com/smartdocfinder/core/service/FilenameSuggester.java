@@ -0,0 +1,268 @@
+package com.smartdocfinder.core.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.KeywordTokenizer;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.suggest.InputIterator;
+import org.apache.lucene.search.suggest.Lookup;
+import org.apache.lucene.search.suggest.analyzing.AnalyzingSuggester;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Filename typeahead backed by in-memory FSTs. Segments are immutable, so there is one
+ * AnalyzingSuggester per segment core: after each NRT refresh only new segments are built and
+ * merged-away ones dropped, and documents deleted since a suggester was built are filtered
+ * against the live docs at lookup time. Every filename is entered once per word it contains
+ * (e.g. "annual_report.pdf" also as "report.pdf"), so any word can start a match; matches
+ * at the start of the name weigh more. A lookup stops visiting segments once its latency
+ * budget is used up.
+ */
+@Component
+public class FilenameSuggester implements ReferenceManager.RefreshListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilenameSuggester.class);
+    private static final int MAX_WORDS_PER_NAME = 16;
+    private static final char UNIT_SEPARATOR = '\u001F'; // Reserved by AnalyzingSuggester
+
+    // The whole (lowercased) suffix is one token, so lookups are plain prefix matches on it.
+    private static final Analyzer SUGGEST_ANALYZER = new Analyzer() {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new KeywordTokenizer();
+            return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+        }
+    };
+
+    private final LuceneIndexManager indexManager;
+    private final long maxLatencyNanos;
+    private final Map<IndexReader.CacheKey, AnalyzingSuggester> suggesters = new ConcurrentHashMap<>();
+    private final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "suggest-build");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean syncPending = new AtomicBoolean();
+
+    private record Suggestion(String filename, long weight) {}
+
+    public FilenameSuggester(LuceneIndexManager indexManager,
+                             @Value("${search.suggest.max-latency-micros:1000}") long maxLatencyMicros) {
+        this.indexManager = indexManager;
+        this.maxLatencyNanos = TimeUnit.MICROSECONDS.toNanos(maxLatencyMicros);
+    }
+
+    @PostConstruct
+    private void init() {
+        indexManager.addRefreshListener(this);
+        scheduleSync();
+    }
+
+    @Override
+    public void beforeRefresh() {
+    }
+
+    @Override
+    public void afterRefresh(boolean didRefresh) {
+        if (didRefresh) {
+            scheduleSync();
+        }
+    }
+
+    // Coalesces refreshes that arrive while a sync is queued into that one sync.
+    private void scheduleSync() {
+        if (syncPending.compareAndSet(false, true)) {
+            builder.execute(this::sync);
+        }
+    }
+
+    private void sync() {
+        syncPending.set(false);
+        try {
+            IndexSearcher searcher = indexManager.acquireSearcher();
+            try {
+                Set<IndexReader.CacheKey> current = new HashSet<>();
+                for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                    IndexReader.CacheHelper helper = leaf.reader().getCoreCacheHelper();
+                    if (helper == null) {
+                        continue;
+                    }
+                    current.add(helper.getKey());
+                    if (!suggesters.containsKey(helper.getKey())) {
+                        suggesters.put(helper.getKey(), build(leaf.reader()));
+                    }
+                }
+                suggesters.keySet().retainAll(current);
+            } finally {
+                indexManager.releaseSearcher(searcher);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to update filename suggesters.", e);
+        }
+    }
+
+    private AnalyzingSuggester build(LeafReader reader) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        PostingsEnum parents = reader.postings(new Term(LuceneService.TYPE_FIELD, LuceneService.PARENT_TYPE));
+        BinaryDocValues filenames = reader.getBinaryDocValues(LuceneService.FILENAME_SUGGEST_FIELD);
+        Bits liveDocs = reader.getLiveDocs();
+        if (parents != null && filenames != null) {
+            for (int doc = parents.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = parents.nextDoc()) {
+                if ((liveDocs != null && !liveDocs.get(doc)) || !filenames.advanceExact(doc)) {
+                    continue;
+                }
+                String filename = filenames.binaryValue().utf8ToString();
+                if (filename.isEmpty() || filename.indexOf(UNIT_SEPARATOR) >= 0) {
+                    continue;
+                }
+                addEntries(entries, doc, filename);
+            }
+        }
+        try (Directory tempDir = new ByteBuffersDirectory()) {
+            AnalyzingSuggester suggester = new AnalyzingSuggester(tempDir, "suggest", SUGGEST_ANALYZER);
+            suggester.build(new EntryIterator(entries.iterator()));
+            return suggester;
+        }
+    }
+
+    private record Entry(BytesRef key, long weight, BytesRef payload) {}
+
+    // One entry per word start; the payload carries the segment doc id and the full filename.
+    private static void addEntries(List<Entry> entries, int doc, String filename) {
+        byte[] name = filename.getBytes(StandardCharsets.UTF_8);
+        BytesRef payload = new BytesRef(ByteBuffer.allocate(Integer.BYTES + name.length).putInt(doc).put(name).array());
+        int words = 0;
+        for (int i = 0; i < filename.length() && words < MAX_WORDS_PER_NAME; i++) {
+            boolean wordStart = Character.isLetterOrDigit(filename.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(filename.charAt(i - 1)));
+            if (wordStart) {
+                entries.add(new Entry(new BytesRef(filename.substring(i)), MAX_WORDS_PER_NAME - words, payload));
+                words++;
+            }
+        }
+    }
+
+    private static final class EntryIterator implements InputIterator {
+        private final Iterator<Entry> entries;
+        private Entry current;
+
+        EntryIterator(Iterator<Entry> entries) {
+            this.entries = entries;
+        }
+
+        @Override
+        public BytesRef next() {
+            current = entries.hasNext() ? entries.next() : null;
+            return current == null ? null : current.key();
+        }
+
+        @Override
+        public long weight() {
+            return current.weight();
+        }
+
+        @Override
+        public BytesRef payload() {
+            return current.payload();
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return true;
+        }
+
+        @Override
+        public Set<BytesRef> contexts() {
+            return null;
+        }
+
+        @Override
+        public boolean hasContexts() {
+            return false;
+        }
+    }
+
+    /**
+     * Returns up to limit distinct filenames containing a word that starts with prefix, best first.
+     */
+    public List<String> suggest(String prefix, int limit) throws IOException {
+        long deadline = System.nanoTime() + maxLatencyNanos;
+        IndexSearcher searcher = indexManager.acquireSearcher();
+        try {
+            List<Suggestion> candidates = new ArrayList<>();
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                if (!candidates.isEmpty() && System.nanoTime() > deadline) {
+                    break;
+                }
+                IndexReader.CacheHelper helper = leaf.reader().getCoreCacheHelper();
+                AnalyzingSuggester suggester = helper == null ? null : suggesters.get(helper.getKey());
+                if (suggester == null) {
+                    continue; // Segment is newer than the last sync
+                }
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                // Ask for extra results, as some may belong to documents deleted since the build.
+                for (Lookup.LookupResult result : suggester.lookup(prefix, false, limit * 2)) {
+                    ByteBuffer payload = ByteBuffer.wrap(result.payload.bytes, result.payload.offset, result.payload.length);
+                    int doc = payload.getInt();
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+                    String filename = new String(result.payload.bytes, payload.position(), payload.remaining(),
+                            StandardCharsets.UTF_8);
+                    candidates.add(new Suggestion(filename, result.value));
+                }
+            }
+            candidates.sort(Comparator.comparingLong(Suggestion::weight).reversed());
+            Set<String> filenames = new LinkedHashSet<>();
+            for (Suggestion candidate : candidates) {
+                if (filenames.size() == limit) {
+                    break;
+                }
+                filenames.add(candidate.filename());
+            }
+            return new ArrayList<>(filenames);
+        } finally {
+            indexManager.releaseSearcher(searcher);
+        }
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        builder.shutdownNow();
+    }
+}
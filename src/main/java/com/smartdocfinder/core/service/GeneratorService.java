@@ -5,8 +5,13 @@ import com.smartdocfinder.core.dto.SearchResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Map;
@@ -15,17 +20,23 @@ import java.util.Map;
 public class GeneratorService {
 
     private static final Logger logger = LoggerFactory.getLogger(GeneratorService.class);
+    private static final String NO_CONTEXT_ANSWER = "Could not generate an answer as no relevant documents were found.";
+    private static final String EMPTY_ANSWER = "The model did not provide an answer based on the provided documents.";
+    private static final String ERROR_ANSWER = "An error occurred while generating the answer.";
 
     private final WebClient webClient;
+    private final String streamPath;
 
     // ✅ CORRECTED: Manually create the constructor to use @Qualifier
-    public GeneratorService(@Qualifier("generatorWebClient") WebClient webClient) {
+    public GeneratorService(@Qualifier("generatorWebClient") WebClient webClient,
+                            @Value("${generator.service.stream-path:/generate/stream}") String streamPath) {
         this.webClient = webClient;
+        this.streamPath = streamPath;
     }
 
     public String generateAnswer(String query, List<SearchResult> contextDocuments) {
         if (contextDocuments == null || contextDocuments.isEmpty()) {
-            return "Could not generate an answer as no relevant documents were found.";
+            return NO_CONTEXT_ANSWER;
         }
 
         logger.info("Sending {} documents to generator for final answer generation.", contextDocuments.size());
@@ -48,12 +59,42 @@ public class GeneratorService {
                 return response.getAnswer();
             } else {
                 logger.warn("Received an empty or null answer from the generator service. Response: {}", response);
-                return "The model did not provide an answer based on the provided documents.";
+                return EMPTY_ANSWER;
             }
 
         } catch (Exception e) {
             logger.error("Failed to call generator service", e);
-            return "An error occurred while generating the answer.";
+            return ERROR_ANSWER;
         }
     }
+
+    /**
+     * Streams the answer token by token from the generator's server-sent-events endpoint.
+     * Errors are propagated so the caller can tell a partial answer from a complete one.
+     */
+    public Flux<String> streamAnswer(String query, List<SearchResult> contextDocuments) {
+        if (contextDocuments == null || contextDocuments.isEmpty()) {
+            return Flux.just(NO_CONTEXT_ANSWER);
+        }
+
+        logger.info("Streaming answer for {} documents from generator.", contextDocuments.size());
+        return webClient.post()
+                .uri(streamPath)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(Map.of(
+                        "query", query,
+                        "documents", contextDocuments
+                ))
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {})
+                .mapNotNull(ServerSentEvent::data)
+                .doOnError(e -> logger.error("Generator stream failed", e));
+    }
+
+    /**
+     * True for the placeholder answers returned when generation failed or produced nothing.
+     */
+    public static boolean isFallbackAnswer(String answer) {
+        return NO_CONTEXT_ANSWER.equals(answer) || EMPTY_ANSWER.equals(answer) || ERROR_ANSWER.equals(answer);
+    }
 }
@@ -0,0 +1,121 @@
+package com.smartdocfinder.core.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Works out how far the Lucene index is guaranteed to be in step with the database, so a
+ * commit can record it and a restart only has to reconcile what came after.
+ * Every unit of work that may end in index writes (a persist batch, a reconciliation page)
+ * holds a ticket from before its rows are written until its documents are indexed. A ticket
+ * remembers the highest document id known when it was taken (its rows can only get higher
+ * ids) and the time it was taken (its rows are stamped later). The checkpoint is bounded by
+ * the oldest open ticket, so rows that are still on their way to the index always lie beyond it.
+ * Documents the indexing lanes gave up on release their ticket instead of holding the checkpoint
+ * down for the rest of the run; their ids are tracked separately, committed with the checkpoint and
+ * re-indexed one by one on the next startup.
+ */
+@Component
+public class IndexCheckpointTracker {
+
+    /**
+     * Everything with an id up to maxDocumentId that was not saved at or after reindexSinceMillis is in the index.
+     */
+    public record Checkpoint(long maxDocumentId, long reindexSinceMillis) {}
+
+    public final class Ticket {
+        private final long floorId;
+        private final long sinceMillis;
+
+        private Ticket(long floorId, long sinceMillis) {
+            this.floorId = floorId;
+            this.sinceMillis = sinceMillis;
+        }
+
+        /**
+         * Marks the ticket's work as durable in the writer. Safe to call more than once.
+         */
+        public void release() {
+            synchronized (IndexCheckpointTracker.this) {
+                open.remove(this);
+            }
+        }
+    }
+
+    private final Set<Ticket> open = new LinkedHashSet<>();
+    private final Set<Long> failed = new TreeSet<>();
+    private long maxKnownId;
+
+    /**
+     * Opens a ticket for work whose rows have not been written yet.
+     */
+    public synchronized Ticket begin() {
+        Ticket ticket = new Ticket(maxKnownId, System.currentTimeMillis());
+        open.add(ticket);
+        return ticket;
+    }
+
+    /**
+     * Opens a ticket for existing rows, e.g. ones being re-indexed after a crash.
+     */
+    public synchronized Ticket begin(long floorId, long sinceMillis) {
+        Ticket ticket = new Ticket(floorId, sinceMillis);
+        open.add(ticket);
+        return ticket;
+    }
+
+    /**
+     * Records ids that have been assigned to persisted rows.
+     */
+    public synchronized void observe(Collection<Long> ids) {
+        for (Long id : ids) {
+            if (id != null && id > maxKnownId) {
+                maxKnownId = id;
+            }
+        }
+    }
+
+    public synchronized void observe(long id) {
+        maxKnownId = Math.max(maxKnownId, id);
+    }
+
+    public synchronized Checkpoint current() {
+        long maxId = maxKnownId;
+        long since = System.currentTimeMillis();
+        for (Ticket ticket : open) {
+            maxId = Math.min(maxId, ticket.floorId);
+            since = Math.min(since, ticket.sinceMillis);
+        }
+        return new Checkpoint(maxId, since);
+    }
+
+    /**
+     * Records documents whose index writes were given up, or whose deletes are still queued,
+     * so they can be reconciled individually.
+     */
+    public synchronized void markFailed(Collection<Long> ids) {
+        failed.addAll(ids);
+    }
+
+    /**
+     * Forgets failed documents that have since been written (or deliberately left to the file scan).
+     */
+    public synchronized void clearFailed(Collection<Long> ids) {
+        if (!failed.isEmpty()) {
+            failed.removeAll(ids);
+        }
+    }
+
+    public synchronized List<Long> failedIds() {
+        return List.copyOf(failed);
+    }
+
+    public synchronized int openTickets() {
+        return open.size();
+    }
+}
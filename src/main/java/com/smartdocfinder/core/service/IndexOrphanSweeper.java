@@ -0,0 +1,90 @@
+package com.smartdocfinder.core.service;
+
+import com.smartdocfinder.core.events.DocumentsRemovedEvent;
+import com.smartdocfinder.core.repository.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removes index entries whose database row no longer exists. Deletes reach the index through the
+ * indexing lanes after the database commit, and are recorded with each Lucene commit until applied;
+ * a crash before the first commit that records them still loses them, and this sweep catches those.
+ * Walks the indexed ids in pages and checks each page against the documents table.
+ */
+@Component
+public class IndexOrphanSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexOrphanSweeper.class);
+
+    // Leaves startup reconciliation and the boot scan a head start.
+    private static final long INITIAL_DELAY_MIN = 1;
+
+    private final LuceneService luceneService;
+    private final DocumentRepository documentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int pageSize;
+    private final ScheduledExecutorService scheduler;
+
+    public IndexOrphanSweeper(LuceneService luceneService,
+                              DocumentRepository documentRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              @Value("${lucene.reconcile.page-size:500}") int pageSize,
+                              @Value("${lucene.orphan-sweep.interval-min:60}") long intervalMin) {
+        this.luceneService = luceneService;
+        this.documentRepository = documentRepository;
+        this.eventPublisher = eventPublisher;
+        this.pageSize = Math.max(1, pageSize);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lucene-orphan-sweep");
+            t.setDaemon(true);
+            return t;
+        });
+        if (intervalMin > 0) {
+            scheduler.scheduleWithFixedDelay(this::sweep, INITIAL_DELAY_MIN, intervalMin, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Queues removal of every indexed document without a row. Returns how many were found.
+     */
+    public int sweep() {
+        int removed = 0;
+        long afterId = 0;
+        try {
+            while (true) {
+                List<Long> ids = luceneService.findIndexedIds(afterId, pageSize);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                afterId = ids.get(ids.size() - 1);
+                Set<Long> existing = documentRepository.findExistingIds(ids);
+                List<Long> orphans = ids.stream().filter(id -> !existing.contains(id)).toList();
+                if (!orphans.isEmpty()) {
+                    eventPublisher.publishEvent(new DocumentsRemovedEvent(orphans));
+                    removed += orphans.size();
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Index orphan sweep failed after id {}.", afterId, e);
+        }
+        if (removed > 0) {
+            logger.info("Index orphan sweep: removing {} documents that no longer exist in the database.", removed);
+        }
+        return removed;
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
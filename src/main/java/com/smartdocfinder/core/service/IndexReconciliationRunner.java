@@ -0,0 +1,153 @@
+package com.smartdocfinder.core.service;
+
+import com.smartdocfinder.core.events.DocumentBatchSavedEvent;
+import com.smartdocfinder.core.events.DocumentsRemovedEvent;
+import com.smartdocfinder.core.model.DocumentEntity;
+import com.smartdocfinder.core.model.EmbeddingOutboxEntry;
+import com.smartdocfinder.core.repository.DocumentRepository;
+import com.smartdocfinder.core.repository.EmbeddingOutboxRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Brings the index back in step with the database after a crash. Rows the last Lucene
+ * commit does not vouch for (see IndexCheckpointTracker) have their text loaded from
+ * document_contents (or re-extracted from the source file if none is stored) and are re-published as saved
+ * documents, which re-indexes them; their vectors live in the same index, so an embedding job
+ * is queued in the outbox for each of them as well. Documents the previous run gave up on or had
+ * deletes queued for (recorded with the commit) are handled first: re-indexed if their row still exists, removed
+ * from the index otherwise. Runs before the
+ * boot scan, so the file manifest and the index agree again when it starts.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class IndexReconciliationRunner implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexReconciliationRunner.class);
+
+    // Row timestamps and the checkpoint come from separate clock reads; look back a little further.
+    private static final long CLOCK_SLACK_MS = 1000;
+
+    private final DocumentRepository documentRepository;
+    private final LuceneIndexManager indexManager;
+    private final IndexCheckpointTracker checkpointTracker;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DocumentUploadService documentUploadService;
+    private final EmbeddingOutboxRepository outboxRepository;
+    private final int pageSize;
+
+    public IndexReconciliationRunner(DocumentRepository documentRepository,
+                                     LuceneIndexManager indexManager,
+                                     IndexCheckpointTracker checkpointTracker,
+                                     ApplicationEventPublisher eventPublisher,
+                                     DocumentUploadService documentUploadService,
+                                     EmbeddingOutboxRepository outboxRepository,
+                                     @Value("${lucene.reconcile.page-size:500}") int pageSize) {
+        this.documentRepository = documentRepository;
+        this.indexManager = indexManager;
+        this.checkpointTracker = checkpointTracker;
+        this.eventPublisher = eventPublisher;
+        this.documentUploadService = documentUploadService;
+        this.outboxRepository = outboxRepository;
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    @Override
+    public void run(String... args) {
+        reconcileFailed(indexManager.getStartupFailedIds());
+
+        Long maxId = documentRepository.findMaxId();
+        if (maxId == null) {
+            logger.info("Index reconciliation: the database is empty, nothing to do.");
+            return;
+        }
+        // Ids handed out from here on are all above the current maximum.
+        checkpointTracker.observe(maxId);
+
+        IndexCheckpointTracker.Checkpoint checkpoint = indexManager.getStartupCheckpoint();
+        long watermark = checkpoint == null ? 0 : checkpoint.maxDocumentId();
+        if (checkpoint == null) {
+            logger.warn("Index has no commit checkpoint; re-indexing all {} rows up to id {}.",
+                    documentRepository.count(), maxId);
+        }
+
+        long sinceMillis = checkpoint == null ? 0 : checkpoint.reindexSinceMillis();
+
+        // Holds the checkpoint down for the whole pass; each page also carries its own ticket.
+        IndexCheckpointTracker.Ticket passTicket = checkpointTracker.begin(watermark, sinceMillis);
+        try {
+            long created = reconcile(afterId -> documentRepository
+                    .findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, pageSize)), watermark, watermark, sinceMillis);
+            long rewritten = 0;
+            if (checkpoint != null && watermark > 0) {
+                LocalDateTime since = LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(sinceMillis - CLOCK_SLACK_MS), ZoneId.systemDefault());
+                rewritten = reconcile(afterId -> documentRepository
+                        .findRewrittenSince(afterId, watermark, since, PageRequest.of(0, pageSize)), 0, watermark, sinceMillis);
+            }
+            logger.info("Index reconciliation: re-indexing {} rows after checkpoint id {} and {} rows rewritten since then.",
+                    created, watermark, rewritten);
+        } finally {
+            passTicket.release();
+        }
+    }
+
+    private void reconcileFailed(List<Long> failedIds) {
+        if (failedIds.isEmpty()) {
+            return;
+        }
+        List<DocumentEntity> rows = documentRepository.findAllById(failedIds);
+        Set<Long> existing = rows.stream().map(DocumentEntity::getId).collect(Collectors.toSet());
+        List<Long> removed = failedIds.stream().filter(id -> !existing.contains(id)).toList();
+        List<DocumentEntity> reloaded = documentUploadService.loadContents(rows);
+        Set<Long> reloadedIds = reloaded.stream().map(DocumentEntity::getId).collect(Collectors.toSet());
+        // Rows without any text left are left to the boot scan, which re-reads the file.
+        checkpointTracker.clearFailed(rows.stream().map(DocumentEntity::getId).filter(id -> !reloadedIds.contains(id)).toList());
+        if (!reloaded.isEmpty()) {
+            outboxRepository.saveAll(reloaded.stream().map(EmbeddingOutboxEntry::new).toList());
+            // Stays recorded as failed until written, so no ticket is needed.
+            eventPublisher.publishEvent(new DocumentBatchSavedEvent(reloaded, null));
+        }
+        if (!removed.isEmpty()) {
+            eventPublisher.publishEvent(new DocumentsRemovedEvent(removed));
+        }
+        logger.info("Index reconciliation: re-indexing {} and removing {} documents that failed to index in the last run.",
+                reloaded.size(), removed.size());
+    }
+
+    private long reconcile(LongFunction<List<DocumentEntity>> nextPage, long startAfterId, long floorId, long sinceMillis) {
+        long count = 0;
+        long afterId = startAfterId;
+        while (true) {
+            List<DocumentEntity> page = nextPage.apply(afterId);
+            if (page.isEmpty()) {
+                return count;
+            }
+            afterId = page.get(page.size() - 1).getId();
+            List<DocumentEntity> reloaded = documentUploadService.loadContents(page);
+            if (reloaded.isEmpty()) {
+                continue;
+            }
+            outboxRepository.saveAll(reloaded.stream().map(EmbeddingOutboxEntry::new).toList());
+            IndexCheckpointTracker.Ticket ticket = checkpointTracker.begin(floorId, sinceMillis);
+            // Blocks when the indexing lanes are full, so the pass never reads ahead of the writer.
+            eventPublisher.publishEvent(new DocumentBatchSavedEvent(reloaded, ticket));
+            count += reloaded.size();
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.smartdocfinder.core.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Staged, back-pressured ingestion: discover/stat -> read/parse -> persist -> index/publish.
+ * The walk compares each file's size and mtime with the persisted manifest, so unchanged files
+ * are never opened and a restart over an indexed corpus costs one directory walk.
+ * Reading, hashing, type detection and parsing share one streaming pass per file (see DocumentParserService).
+ * Every stage has its own worker count and a bounded input queue, so a slow stage blocks its
+ * producers instead of letting work pile up on the heap, and only the persist stage ever holds
+ * a database connection.
+ */
+@Component
+public class IngestionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionPipeline.class);
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final DocumentUploadService documentUploadService;
+    private final int queueCapacity;
+    private final int parseWorkers;
+    private final int persistWorkers;
+    private final int publishWorkers;
+    private final int persistBatchSize;
+    private final long persistLingerMs;
+    private final long statsIntervalSec;
+
+    private final AtomicLong discovered = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private volatile List<Stage<?>> currentStages = List.of();
+
+    public IngestionPipeline(DocumentUploadService documentUploadService,
+                             @Value("${ingestion.pipeline.queue-capacity:1000}") int queueCapacity,
+                             @Value("${ingestion.pipeline.parse-workers:8}") int parseWorkers,
+                             @Value("${ingestion.pipeline.persist-workers:4}") int persistWorkers,
+                             @Value("${ingestion.pipeline.publish-workers:2}") int publishWorkers,
+                             @Value("${ingestion.pipeline.persist-batch-size:50}") int persistBatchSize,
+                             @Value("${ingestion.pipeline.persist-linger-ms:500}") long persistLingerMs,
+                             @Value("${ingestion.pipeline.stats-interval-sec:30}") long statsIntervalSec) {
+        this.documentUploadService = documentUploadService;
+        this.queueCapacity = queueCapacity;
+        this.parseWorkers = parseWorkers;
+        this.persistWorkers = persistWorkers;
+        this.publishWorkers = publishWorkers;
+        this.persistBatchSize = persistBatchSize;
+        this.persistLingerMs = persistLingerMs;
+        this.statsIntervalSec = statsIntervalSec;
+    }
+
+    /**
+     * Point-in-time view of one stage, for logging and the stats endpoint.
+     */
+    public record StageStats(String name, int workers, long processed, long failed, int queueDepth, int queueCapacity) {}
+
+    /**
+     * Walks the directory tree and pushes every new or changed regular file through the stages.
+     * Once all stages have drained, files the manifest knows but the walk did not see are removed.
+     * Blocks until everything has finished.
+     */
+    public void run(Path root) throws IOException, InterruptedException {
+        Map<String, DocumentUploadService.KnownFile> snapshot = documentUploadService.loadManifestSnapshot();
+
+        // Queues that carry extracted text are kept short: their size is what bounds the heap.
+        Stage<DocumentUploadService.PersistResult> publish = new Stage<>("index/publish", publishWorkers, 1, 0,
+                publishWorkers * 2, each((DocumentUploadService.PersistResult result) -> documentUploadService.publish(result)));
+        Stage<DocumentUploadService.ProcessedFile> persist = new Stage<>("persist", persistWorkers,
+                persistBatchSize, persistLingerMs, persistBatchSize * persistWorkers * 2,
+                (List<DocumentUploadService.ProcessedFile> batch) -> {
+                    DocumentUploadService.PersistResult result = documentUploadService.persistBatch(batch);
+                    if (!result.isEmpty()) {
+                        publish.put(result);
+                    }
+                });
+        Stage<DocumentUploadService.FileCandidate> read = new Stage<>("read/parse", parseWorkers, 1, 0, queueCapacity,
+                each((DocumentUploadService.FileCandidate candidate) -> {
+                    DocumentUploadService.ProcessedFile processed = documentUploadService.parseFile(candidate);
+                    if (processed != null) {
+                        persist.put(processed);
+                    }
+                }));
+        read.downstream = persist;
+        persist.downstream = publish;
+
+        List<Stage<?>> stages = List.of(read, persist, publish);
+        this.currentStages = stages;
+        discovered.set(0);
+        unchanged.set(0);
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ingestion-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(this::logStats, statsIntervalSec, statsIntervalSec, TimeUnit.SECONDS);
+
+        stages.forEach(Stage::start);
+        boolean walkCompleted = false;
+        try {
+            // Discover/stat stage: the walk hands over the attributes it already read, so the manifest
+            // check costs no extra syscall. put() blocks when read/parse falls behind, which throttles the walk.
+            DiscoverVisitor visitor = new DiscoverVisitor(read, snapshot);
+            Files.walkFileTree(root, visitor);
+            if (visitor.interrupted != null) {
+                throw visitor.interrupted;
+            }
+            walkCompleted = !visitor.skippedPaths;
+        } finally {
+            read.closeInput();
+            for (Stage<?> stage : stages) {
+                stage.awaitTermination();
+            }
+            reporter.shutdownNow();
+            logStats();
+        }
+
+        // Only a complete walk proves the remaining paths are gone; after a partial one they may just be unvisited.
+        if (!walkCompleted) {
+            logger.warn("Discovery did not cover the whole tree; keeping {} unseen manifest entries until the next run.", snapshot.size());
+        } else if (!snapshot.isEmpty()) {
+            documentUploadService.removePaths(snapshot.keySet());
+        }
+    }
+
+    private final class DiscoverVisitor extends SimpleFileVisitor<Path> {
+        private final Stage<DocumentUploadService.FileCandidate> read;
+        private final Map<String, DocumentUploadService.KnownFile> snapshot;
+        private InterruptedException interrupted;
+        private boolean skippedPaths;
+
+        DiscoverVisitor(Stage<DocumentUploadService.FileCandidate> read, Map<String, DocumentUploadService.KnownFile> snapshot) {
+            this.read = read;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (!attrs.isRegularFile()) {
+                return FileVisitResult.CONTINUE;
+            }
+            discovered.incrementAndGet();
+            DocumentUploadService.FileCandidate candidate = documentUploadService.statFile(file, attrs, snapshot);
+            if (candidate == null) {
+                unchanged.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+            try {
+                read.put(candidate);
+                return FileVisitResult.CONTINUE;
+            } catch (InterruptedException e) {
+                interrupted = e;
+                return FileVisitResult.TERMINATE;
+            }
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            // Whatever sits below an unreadable path is still in the snapshot but not necessarily gone.
+            skippedPaths = true;
+            logger.warn("Could not read {} during discovery. Skipping.", file, exc);
+            return FileVisitResult.CONTINUE;
+        }
+    }
+
+    public long getDiscoveredCount() {
+        return discovered.get();
+    }
+
+    public long getUnchangedCount() {
+        return unchanged.get();
+    }
+
+    public List<StageStats> getStats() {
+        List<StageStats> stats = new ArrayList<>();
+        for (Stage<?> stage : currentStages) {
+            stats.add(stage.stats());
+        }
+        return stats;
+    }
+
+    private void logStats() {
+        StringBuilder line = new StringBuilder("Ingestion progress: discovered=").append(discovered.get())
+                .append(" unchanged=").append(unchanged.get());
+        for (StageStats s : getStats()) {
+            line.append(" | ").append(s.name())
+                .append(" done=").append(s.processed())
+                .append(" failed=").append(s.failed())
+                .append(" queued=").append(s.queueDepth()).append('/').append(s.queueCapacity());
+        }
+        logger.info(line.toString());
+    }
+
+    @FunctionalInterface
+    private interface BatchHandler<I> {
+        void handle(List<I> batch) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface ItemHandler<I> {
+        void handle(I item) throws Exception;
+    }
+
+    private static <I> BatchHandler<I> each(ItemHandler<I> handler) {
+        return batch -> {
+            for (I item : batch) {
+                handler.handle(item);
+            }
+        };
+    }
+
+    /**
+     * A pool of workers draining one bounded queue. Workers exit once the upstream stage has
+     * finished and the queue is empty; the last one out closes the downstream stage's input.
+     */
+    private static final class Stage<I> {
+        private final String name;
+        private final int workers;
+        private final int batchSize;
+        private final long lingerMs;
+        private final BlockingQueue<I> queue;
+        private final BatchHandler<I> handler;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicInteger activeWorkers = new AtomicInteger();
+        private volatile boolean inputClosed;
+        private Stage<?> downstream;
+        private ExecutorService executor;
+
+        Stage(String name, int workers, int batchSize, long lingerMs, int capacity, BatchHandler<I> handler) {
+            this.name = name;
+            this.workers = Math.max(1, workers);
+            this.batchSize = Math.max(1, batchSize);
+            this.lingerMs = lingerMs;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+            this.handler = handler;
+        }
+
+        void put(I item) throws InterruptedException {
+            queue.put(item);
+        }
+
+        void closeInput() {
+            inputClosed = true;
+        }
+
+        void start() {
+            String threadPrefix = "ingest-" + name.replace('/', '-') + "-";
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(workers, r -> new Thread(r, threadPrefix + threadCount.incrementAndGet()));
+            activeWorkers.set(workers);
+            for (int i = 0; i < workers; i++) {
+                executor.submit(this::work);
+            }
+            executor.shutdown();
+        }
+
+        void awaitTermination() throws InterruptedException {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.debug("Waiting for ingestion stage '{}' to drain ({} queued).", name, queue.size());
+            }
+        }
+
+        private void work() {
+            try {
+                List<I> batch = new ArrayList<>(batchSize);
+                while (true) {
+                    I first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (inputClosed && queue.isEmpty()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                    fillBatch(batch);
+                    try {
+                        handler.handle(batch);
+                        processed.addAndGet(batch.size());
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        failed.addAndGet(batch.size());
+                        logger.error("Ingestion stage '{}' failed on a batch of {} items.", name, batch.size(), e);
+                    }
+                    batch = new ArrayList<>(batchSize);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Ingestion stage '{}' was interrupted.", name);
+            } finally {
+                if (activeWorkers.decrementAndGet() == 0 && downstream != null) {
+                    downstream.closeInput();
+                }
+            }
+        }
+
+        // Tops a batch up to batchSize, waiting at most lingerMs for stragglers.
+        private void fillBatch(List<I> batch) throws InterruptedException {
+            if (batchSize == 1) {
+                return;
+            }
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+            while (batch.size() < batchSize) {
+                queue.drainTo(batch, batchSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= batchSize || remaining <= 0 || (inputClosed && queue.isEmpty())) {
+                    break;
+                }
+                I next = queue.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS)), TimeUnit.NANOSECONDS);
+                if (next != null) {
+                    batch.add(next);
+                }
+            }
+        }
+
+        StageStats stats() {
+            return new StageStats(name, workers, processed.get(), failed.get(), queue.size(),
+                    queue.size() + queue.remainingCapacity());
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.smartdocfinder.core.service;
+
+import com.smartdocfinder.core.dto.SearchResult;
+import com.smartdocfinder.core.model.DocumentEntity;
+import com.smartdocfinder.core.repository.DocumentContentRepositoryCustom.PassageText;
+import com.smartdocfinder.core.repository.DocumentRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherLifetimeManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.join.QueryBitSetProducer;
+import org.apache.lucene.search.join.ScoreMode;
+import org.apache.lucene.search.join.ToParentBlockJoinQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Ranked file lists without re-ranking or generation, for list/browse UIs and integrations.
+ * Passages are joined to their parent document (ToParentBlockJoinQuery, best passage score),
+ * so every hit is one document and IndexSearcher.searchAfter pages through them directly.
+ * A cursor names the point-in-time searcher its page came from (kept alive by a
+ * SearcherLifetimeManager), so deep paging stays consistent while the index keeps changing;
+ * once that searcher has been pruned the cursor is rejected and the client starts over.
+ * Searchers are pruned on a timer once their TTL has passed, and at most max-cursor-searchers
+ * (the newest) are kept, so a busy index cannot pin an unbounded number of old readers.
+ * Ids come from doc values and only the requested fields are loaded; with semantic fusion the first page is the hybrid
+ * candidate list instead, which cannot be paged further.
+ */
+@Service
+public class KeywordSearchService {
+
+    public static final Set<String> DEFAULT_FIELDS = Set.of("id", "filename", "score");
+    public static final Set<String> ALLOWED_FIELDS = Set.of("id", "filename", "score", "matchType",
+            "snippet", "passage", "filePath", "fileType", "fileSize", "uploadedAt");
+    private static final Set<String> DATABASE_FIELDS = Set.of("filePath", "fileType", "fileSize", "uploadedAt");
+    private static final Set<String> FILENAME_FIELDS = Set.of("filename");
+
+    private static final Logger logger = LoggerFactory.getLogger(KeywordSearchService.class);
+
+    private static final QueryBitSetProducer PARENTS = new QueryBitSetProducer(
+            new TermQuery(new Term(LuceneService.TYPE_FIELD, LuceneService.PARENT_TYPE)));
+
+    private final LuceneIndexManager indexManager;
+    private final LuceneService luceneService;
+    private final DocumentRepository documentRepository;
+    private final SearcherLifetimeManager searchers = new SearcherLifetimeManager();
+    private final double cursorTtlSec;
+    private final int maxCursorSearchers;
+    private final ScheduledExecutorService pruneScheduler;
+
+    /**
+     * One page of results, already projected to the requested fields. nextCursor is null on the last page.
+     */
+    public record ResultPage(List<Map<String, Object>> results, long totalHits, String nextCursor) {}
+
+    /**
+     * The searcher a cursor refers to is gone; the client has to start from the first page.
+     */
+    public static class CursorExpiredException extends RuntimeException {
+        public CursorExpiredException() {
+            super("Cursor has expired; start again from the first page");
+        }
+    }
+
+    public KeywordSearchService(LuceneIndexManager indexManager,
+                                LuceneService luceneService,
+                                DocumentRepository documentRepository,
+                                @Value("${search.keyword-only.cursor-ttl-sec:600}") double cursorTtlSec,
+                                @Value("${search.keyword-only.max-cursor-searchers:16}") int maxCursorSearchers) {
+        this.indexManager = indexManager;
+        this.luceneService = luceneService;
+        this.documentRepository = documentRepository;
+        this.cursorTtlSec = cursorTtlSec;
+        this.maxCursorSearchers = Math.max(1, maxCursorSearchers);
+        this.pruneScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "keyword-cursor-prune");
+            t.setDaemon(true);
+            return t;
+        });
+        pruneScheduler.scheduleWithFixedDelay(this::prune, 10, 10, TimeUnit.SECONDS);
+    }
+
+    public ResultPage search(String queryStr, String cursor, int size, Set<String> fields, boolean semantic) throws Exception {
+        if (semantic) {
+            return semanticPage(queryStr, size, fields);
+        }
+        Query query = luceneService.buildLuceneQuery(luceneService.normalizeQuery(queryStr));
+        Query passages = new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(LuceneService.PASSAGES_ONLY, BooleanClause.Occur.FILTER)
+                .build();
+        Query documents = new ToParentBlockJoinQuery(passages, PARENTS, ScoreMode.Max);
+
+        Cursor after = cursor == null || cursor.isBlank() ? null : Cursor.decode(cursor);
+        IndexSearcher searcher;
+        long version;
+        if (after == null) {
+            searcher = indexManager.acquireSearcher();
+            version = ((DirectoryReader) searcher.getIndexReader()).getVersion();
+            // Most first pages hit a version that is already recorded; page on that exact searcher.
+            IndexSearcher recorded = searchers.acquire(version);
+            if (recorded != null) {
+                indexManager.releaseSearcher(searcher);
+                try {
+                    return page(recorded, version, documents, query, null, size, fields);
+                } finally {
+                    searchers.release(recorded);
+                }
+            }
+            try {
+                version = searchers.record(searcher);
+                // A new version may push the oldest searcher over the cap.
+                prune();
+                return page(searcher, version, documents, query, null, size, fields);
+            } finally {
+                indexManager.releaseSearcher(searcher);
+            }
+        }
+        searcher = searchers.acquire(after.version());
+        if (searcher == null) {
+            throw new CursorExpiredException();
+        }
+        try {
+            return page(searcher, after.version(), documents, query, new ScoreDoc(after.doc(), after.score()), size, fields);
+        } finally {
+            searchers.release(searcher);
+        }
+    }
+
+    private ResultPage page(IndexSearcher searcher, long version, Query documents, Query query, ScoreDoc after,
+                            int size, Set<String> fields) throws IOException {
+        TopDocs hits = after == null ? searcher.search(documents, size) : searcher.searchAfter(after, documents, size);
+        long[] ids = LuceneService.readDocIds(searcher.getIndexReader(), hits.scoreDocs);
+        StoredFields storedFields = searcher.storedFields();
+
+        List<Map<String, Object>> results = new ArrayList<>(hits.scoreDocs.length);
+        for (int i = 0; i < hits.scoreDocs.length; i++) {
+            ScoreDoc hit = hits.scoreDocs[i];
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("id", Long.toString(ids[i]));
+            if (fields.contains("filename")) {
+                result.put("filename", storedFields.document(hit.doc, FILENAME_FIELDS).get("filename"));
+            }
+            if (fields.contains("score")) {
+                result.put("score", hit.score);
+            }
+            if (fields.contains("matchType")) {
+                result.put("matchType", "keyword");
+            }
+            results.add(result);
+        }
+
+        if (fields.contains("snippet") || fields.contains("passage")) {
+            addPassageFields(searcher, query, ids, results, fields);
+        }
+        addDatabaseFields(ids, results, fields);
+        projectId(results, fields);
+
+        // A short page is the last one.
+        String nextCursor = null;
+        if (hits.scoreDocs.length == size) {
+            ScoreDoc last = hits.scoreDocs[hits.scoreDocs.length - 1];
+            nextCursor = new Cursor(version, last.doc, last.score).encode();
+        }
+        return new ResultPage(results, hits.totalHits.value(), nextCursor);
+    }
+
+    private void addPassageFields(IndexSearcher searcher, Query query, long[] ids,
+                                  List<Map<String, Object>> results, Set<String> fields) throws IOException {
+        int[] passages = new int[ids.length];
+        int found = 0;
+        for (int i = 0; i < ids.length; i++) {
+            Integer passage = luceneService.findBestPassage(searcher, ids[i], query);
+            passages[i] = passage == null ? -1 : passage;
+            found += passage == null ? 0 : 1;
+        }
+        int[] docs = new int[found];
+        long[] docIds = new long[found];
+        for (int i = 0, j = 0; i < passages.length; i++) {
+            if (passages[i] >= 0) {
+                docIds[j] = ids[i];
+                docs[j++] = passages[i];
+            }
+        }
+        List<PassageText> texts = luceneService.readPassages(searcher, docIds, docs);
+        String[] snippets = fields.contains("snippet") ? luceneService.createSnippets(query, searcher, docs, texts) : null;
+        for (int i = 0, j = 0; i < passages.length; i++) {
+            Map<String, Object> result = results.get(i);
+            boolean hasPassage = passages[i] >= 0;
+            if (snippets != null) {
+                result.put("snippet", hasPassage ? snippets[j] : null);
+            }
+            if (fields.contains("passage")) {
+                PassageText text = hasPassage ? texts.get(j) : null;
+                result.put("passage", text == null ? null : text.text());
+            }
+            j += hasPassage ? 1 : 0;
+        }
+    }
+
+    private ResultPage semanticPage(String queryStr, int size, Set<String> fields) throws Exception {
+        LuceneService.Candidates fused = luceneService.retrieveInitialCandidates(queryStr, ranked -> size);
+        List<Map<String, Object>> results = new ArrayList<>();
+        long[] ids = new long[fused.results().size()];
+        for (SearchResult candidate : fused.results()) {
+            ids[results.size()] = Long.parseLong(candidate.getId());
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("id", candidate.getId());
+            if (fields.contains("filename")) {
+                result.put("filename", candidate.getFilename());
+            }
+            if (fields.contains("score")) {
+                result.put("score", candidate.getHybridScore());
+            }
+            if (fields.contains("matchType")) {
+                result.put("matchType", candidate.getMatchType());
+            }
+            if (fields.contains("snippet")) {
+                result.put("snippet", candidate.getSnippet());
+            }
+            if (fields.contains("passage")) {
+                result.put("passage", candidate.getPassage());
+            }
+            results.add(result);
+        }
+        addDatabaseFields(ids, results, fields);
+        projectId(results, fields);
+        return new ResultPage(results, fused.total(), null);
+    }
+
+    // Path, type, size and upload time live in the database: one lookup per page, and only when asked for.
+    private void addDatabaseFields(long[] ids, List<Map<String, Object>> results, Set<String> fields) {
+        Set<String> wanted = fields.stream().filter(DATABASE_FIELDS::contains).collect(Collectors.toSet());
+        if (wanted.isEmpty() || results.isEmpty()) {
+            return;
+        }
+        Set<Long> uniqueIds = new LinkedHashSet<>();
+        for (long id : ids) {
+            uniqueIds.add(id);
+        }
+        Map<Long, DocumentEntity> rows = new HashMap<>();
+        documentRepository.findAllById(uniqueIds).forEach(doc -> rows.put(doc.getId(), doc));
+        for (int i = 0; i < ids.length; i++) {
+            Map<String, Object> r = results.get(i);
+            DocumentEntity doc = rows.get(ids[i]);
+            if (wanted.contains("filePath")) {
+                r.put("filePath", doc == null ? null : doc.getFilePath());
+            }
+            if (wanted.contains("fileType")) {
+                r.put("fileType", doc == null ? null : doc.getFileType());
+            }
+            if (wanted.contains("fileSize")) {
+                r.put("fileSize", doc == null ? null : doc.getFileSize());
+            }
+            if (wanted.contains("uploadedAt")) {
+                r.put("uploadedAt", doc == null ? null : doc.getUploadedAt());
+            }
+        }
+    }
+
+    // The id is needed internally to join the other fields; drop it last if it was not requested.
+    private static void projectId(List<Map<String, Object>> results, Set<String> fields) {
+        if (!fields.contains("id")) {
+            results.forEach(r -> r.remove("id"));
+        }
+    }
+
+    // Drops searchers replaced more than cursorTtlSec ago, and all but the newest maxCursorSearchers.
+    private void prune() {
+        SearcherLifetimeManager.PruneByAge byAge = new SearcherLifetimeManager.PruneByAge(cursorTtlSec);
+        AtomicInteger kept = new AtomicInteger();
+        try {
+            // Visited newest first.
+            searchers.prune((ageSec, searcher) -> byAge.doPrune(ageSec, searcher) || kept.incrementAndGet() > maxCursorSearchers);
+        } catch (IOException e) {
+            logger.warn("Pruning cursor searchers failed.", e);
+        }
+    }
+
+    // Opaque to clients: searcher version, doc number and score of the last hit, URL-safe base64.
+    private record Cursor(long version, int doc, float score) {
+        String encode() {
+            ByteBuffer bytes = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + Float.BYTES)
+                    .putLong(version).putInt(doc).putFloat(score);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+        }
+
+        static Cursor decode(String cursor) {
+            byte[] raw;
+            try {
+                raw = Base64.getUrlDecoder().decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Malformed cursor", e);
+            }
+            if (raw.length != Long.BYTES + Integer.BYTES + Float.BYTES) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(raw);
+            return new Cursor(bytes.getLong(), bytes.getInt(), bytes.getFloat());
+        }
+    }
+
+    @PreDestroy
+    private void shutdown() throws IOException {
+        pruneScheduler.shutdownNow();
+        searchers.close();
+    }
+}
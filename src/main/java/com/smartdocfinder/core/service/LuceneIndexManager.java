@@ -0,0 +1,331 @@
+package com.smartdocfinder.core.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.codecs.lucene101.Lucene101Codec;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.ControlledRealTimeReopenThread;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.Directory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Owns the shared IndexWriter and the near-real-time searcher lifecycle.
+ * Searches acquire a pooled IndexSearcher instead of opening a new reader per request,
+ * and a background thread refreshes it so results are never staler than the configured bound.
+ * A commit scheduler makes writes durable once enough time, documents or bytes have piled up,
+ * and stamps every commit with the checkpoint IndexReconciliationRunner resumes from after a crash.
+ */
+@Component
+public class LuceneIndexManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(LuceneIndexManager.class);
+
+    // Commit user data keys, see IndexCheckpointTracker.Checkpoint.
+    public static final String MAX_DOCUMENT_ID_KEY = "max_document_id";
+    public static final String REINDEX_SINCE_KEY = "reindex_since";
+    public static final String SCHEMA_VERSION_KEY = "schema_version";
+    // Random id of this index, kept until the index is recreated. Index versions only increase
+    // within one index, so a version is only meaningful together with this id.
+    public static final String INDEX_ID_KEY = "index_id";
+    // Comma-separated ids the indexing lanes gave up on or had deletes queued for, see IndexCheckpointTracker.markFailed.
+    public static final String FAILED_IDS_KEY = "failed_document_ids";
+
+    // Bump whenever a field changes how it is indexed. Lucene rejects documents whose field
+    // options differ from existing segments, so an index with another version is rebuilt from
+    // the database by IndexReconciliationRunner. Indexes without the key are version 1.
+    // 2: content postings with offsets.
+    // 3: documents indexed as passage blocks keyed by doc_key.
+    // 4: filename_autocomplete n-grams replaced by filename_suggest doc values.
+    // 5: stored id/parent_id replaced by doc_id (LongPoint + numeric doc values) on every document.
+    // 6: passage text and filename no longer stored; passages record their range in document_contents.
+    public static final int SCHEMA_VERSION = 6;
+
+    private final Directory luceneDirectory;
+    private final Analyzer luceneAnalyzer;
+    private final double maxStaleSec;
+    private final double minStaleSec;
+    private final IndexCheckpointTracker checkpointTracker;
+    private final long commitIntervalMs;
+    private final long commitMaxDocs;
+    private final long commitMaxBytes;
+
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+    private ControlledRealTimeReopenThread<IndexSearcher> reopenThread;
+    private ScheduledExecutorService commitScheduler;
+    private Map<String, String> startupCommitData = Map.of();
+    private String indexId;
+    private long startupIndexVersion;
+    private volatile IndexCheckpointTracker.Checkpoint committedCheckpoint;
+    private volatile List<Long> committedFailedIds = List.of();
+
+    // Writes since the last commit, for the size-based triggers.
+    private final AtomicLong uncommittedDocs = new AtomicLong();
+    private final AtomicLong uncommittedBytes = new AtomicLong();
+    private volatile long lastCommitNanos = System.nanoTime();
+
+    public LuceneIndexManager(Directory luceneDirectory,
+                              Analyzer luceneAnalyzer,
+                              IndexCheckpointTracker checkpointTracker,
+                              @Value("${lucene.nrt.max-stale-sec:1.0}") double maxStaleSec,
+                              @Value("${lucene.nrt.min-stale-sec:0.1}") double minStaleSec,
+                              @Value("${lucene.commit.interval-sec:60}") long commitIntervalSec,
+                              @Value("${lucene.commit.max-docs:10000}") long commitMaxDocs,
+                              @Value("${lucene.commit.max-mb:256}") long commitMaxMb) {
+        this.luceneDirectory = luceneDirectory;
+        this.luceneAnalyzer = luceneAnalyzer;
+        this.checkpointTracker = checkpointTracker;
+        this.maxStaleSec = maxStaleSec;
+        this.minStaleSec = minStaleSec;
+        this.commitIntervalMs = TimeUnit.SECONDS.toMillis(commitIntervalSec);
+        this.commitMaxDocs = commitMaxDocs;
+        this.commitMaxBytes = commitMaxMb * 1024 * 1024;
+    }
+
+    /**
+     * Creates the single, long-lived IndexWriter and the SearcherManager that shares its NRT readers.
+     */
+    @PostConstruct
+    private void init() throws IOException {
+        IndexWriterConfig iwc = new IndexWriterConfig(luceneAnalyzer);
+        iwc.setRAMBufferSizeMB(256.0);
+        boolean currentSchema = isCurrentSchema();
+        iwc.setOpenMode(currentSchema ? IndexWriterConfig.OpenMode.CREATE_OR_APPEND : IndexWriterConfig.OpenMode.CREATE);
+        // Stored fields (filenames and passage ranges; the text itself is in document_contents) are
+        // only decoded for the few documents a search returns, so the slower decompression is cheap.
+        iwc.setCodec(new Lucene101Codec(Lucene101Codec.Mode.BEST_COMPRESSION));
+        this.indexWriter = new IndexWriter(luceneDirectory, iwc);
+        logger.info("Initialized shared IndexWriter with {}MB RAM buffer.", iwc.getRAMBufferSizeMB());
+
+        // The writer starts out with the user data of the last commit.
+        Map<String, String> commitData = new HashMap<>();
+        if (indexWriter.getLiveCommitData() != null) {
+            indexWriter.getLiveCommitData().forEach(e -> commitData.put(e.getKey(), e.getValue()));
+        }
+        this.startupCommitData = Map.copyOf(commitData);
+        String committedId = currentSchema ? commitData.get(INDEX_ID_KEY) : null;
+        this.indexId = committedId != null ? committedId : UUID.randomUUID().toString();
+        this.committedCheckpoint = getStartupCheckpoint();
+        this.committedFailedIds = getStartupFailedIds();
+        // Stay recorded until IndexReconciliationRunner has written them.
+        checkpointTracker.markFailed(committedFailedIds);
+
+        this.searcherManager = new SearcherManager(indexWriter, true, false, new SearcherFactory());
+        this.startupIndexVersion = currentIndexVersion();
+        this.reopenThread = new ControlledRealTimeReopenThread<>(indexWriter, searcherManager, maxStaleSec, minStaleSec);
+        this.reopenThread.setName("lucene-nrt-reopen");
+        this.reopenThread.setDaemon(true);
+        this.reopenThread.start();
+        logger.info("Started NRT reopen thread (max staleness {}s, min staleness {}s).", maxStaleSec, minStaleSec);
+
+        this.commitScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lucene-commit");
+            t.setDaemon(true);
+            return t;
+        });
+        commitScheduler.scheduleWithFixedDelay(this::commitIfDue, 1, 1, TimeUnit.SECONDS);
+        logger.info("Commit scheduler: every {}s, or after {} documents or {}MB of uncommitted changes.",
+                TimeUnit.MILLISECONDS.toSeconds(commitIntervalMs), commitMaxDocs, commitMaxBytes / (1024 * 1024));
+    }
+
+    // True for a missing index or one written with the current schema.
+    private boolean isCurrentSchema() throws IOException {
+        if (!DirectoryReader.indexExists(luceneDirectory)) {
+            return true;
+        }
+        try (DirectoryReader reader = DirectoryReader.open(luceneDirectory)) {
+            String version = reader.getIndexCommit().getUserData().getOrDefault(SCHEMA_VERSION_KEY, "1");
+            if (Integer.parseInt(version) == SCHEMA_VERSION) {
+                return true;
+            }
+            logger.warn("Index schema version {} differs from {}; recreating the index ({} documents will be re-indexed).",
+                    version, SCHEMA_VERSION, reader.numDocs());
+            return false;
+        }
+    }
+
+    public IndexWriter getIndexWriter() {
+        return indexWriter;
+    }
+
+    /**
+     * Counts writes towards the commit thresholds. Bytes are the caller's estimate of the indexed payload.
+     */
+    public void recordWrites(int docs, long bytes) {
+        uncommittedDocs.addAndGet(docs);
+        uncommittedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Checkpoint stored with the last commit before this run, or null if the index has none
+     * (a new index, or one written before checkpoints existed).
+     */
+    public IndexCheckpointTracker.Checkpoint getStartupCheckpoint() {
+        String maxId = startupCommitData.get(MAX_DOCUMENT_ID_KEY);
+        String since = startupCommitData.get(REINDEX_SINCE_KEY);
+        if (maxId == null || since == null) {
+            return null;
+        }
+        return new IndexCheckpointTracker.Checkpoint(Long.parseLong(maxId), Long.parseLong(since));
+    }
+
+    /**
+     * Documents the previous run failed to index, as recorded with its last commit.
+     */
+    public List<Long> getStartupFailedIds() {
+        String ids = startupCommitData.getOrDefault(FAILED_IDS_KEY, "");
+        if (ids.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(ids.split(",")).map(Long::valueOf).toList();
+    }
+
+    private void commitIfDue() {
+        long docs = uncommittedDocs.get();
+        if (docs == 0 && !indexWriter.hasUncommittedChanges()) {
+            lastCommitNanos = System.nanoTime();
+            return;
+        }
+        boolean due = docs >= commitMaxDocs
+                || uncommittedBytes.get() >= commitMaxBytes
+                || TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastCommitNanos) >= commitIntervalMs;
+        if (!due) {
+            return;
+        }
+        try {
+            commit();
+        } catch (Exception e) {
+            // The changes stay in the writer; the next tick tries again.
+            logger.error("Scheduled Lucene commit failed.", e);
+        }
+    }
+
+    /**
+     * Commits everything written so far, together with the current checkpoint. The checkpoint is
+     * taken first, so it only vouches for documents whose writes are already in the writer.
+     */
+    public synchronized void commit() throws IOException {
+        IndexCheckpointTracker.Checkpoint checkpoint = checkpointTracker.current();
+        List<Long> failedIds = checkpointTracker.failedIds();
+        long docs = uncommittedDocs.getAndSet(0);
+        long bytes = uncommittedBytes.getAndSet(0);
+        indexWriter.setLiveCommitData(Map.of(
+                MAX_DOCUMENT_ID_KEY, Long.toString(checkpoint.maxDocumentId()),
+                REINDEX_SINCE_KEY, Long.toString(checkpoint.reindexSinceMillis()),
+                SCHEMA_VERSION_KEY, Integer.toString(SCHEMA_VERSION),
+                INDEX_ID_KEY, indexId,
+                FAILED_IDS_KEY, failedIds.stream().map(String::valueOf).collect(Collectors.joining(","))).entrySet());
+        long start = System.nanoTime();
+        indexWriter.commit();
+        committedCheckpoint = checkpoint;
+        committedFailedIds = failedIds;
+        lastCommitNanos = System.nanoTime();
+        logger.debug("Committed {} documents (~{} KB) in {} ms; checkpoint id {}.", docs, bytes / 1024,
+                TimeUnit.NANOSECONDS.toMillis(lastCommitNanos - start), checkpoint.maxDocumentId());
+    }
+
+    /**
+     * Acquires the current point-in-time searcher. Every call must be paired with {@link #releaseSearcher}.
+     */
+    public IndexSearcher acquireSearcher() throws IOException {
+        return searcherManager.acquire();
+    }
+
+    public void releaseSearcher(IndexSearcher searcher) throws IOException {
+        if (searcher != null) {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Version of the currently visible index. It changes with every commit or refresh that
+     * saw new changes, which makes it a cheap invalidation token for derived caches.
+     */
+    public long currentIndexVersion() throws IOException {
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            return ((DirectoryReader) searcher.getIndexReader()).getVersion();
+        } finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    /**
+     * Id of this index, stored with every commit. A recreated index gets a new one.
+     */
+    public String getIndexId() {
+        return indexId;
+    }
+
+    /**
+     * Version of the commit this run opened. Searchers of that version see exactly the committed
+     * index, so results derived from them stay valid as long as the next run opens the same commit.
+     */
+    public long getStartupIndexVersion() {
+        return startupIndexVersion;
+    }
+
+    /**
+     * Registers a hook that is notified before and after every searcher refresh.
+     */
+    public void addRefreshListener(ReferenceManager.RefreshListener listener) {
+        searcherManager.addListener(listener);
+    }
+
+    /**
+     * Blocks until a searcher reflecting the given writer sequence number is visible,
+     * or until maxWaitMs elapses. Returns true if the generation became searchable.
+     */
+    public boolean waitForGeneration(long sequenceNumber, int maxWaitMs) throws InterruptedException {
+        return reopenThread.waitForGeneration(sequenceNumber, maxWaitMs);
+    }
+
+    /**
+     * Stops the commit and refresh threads, commits pending changes, then closes the searchers and the writer.
+     * Nothing is committed when nothing changed, so the next run opens the same index version.
+     */
+    @PreDestroy
+    private void cleanup() throws IOException {
+        if (commitScheduler != null) {
+            commitScheduler.shutdownNow();
+        }
+        if (indexWriter != null && indexWriter.isOpen()
+                && (uncommittedDocs.get() > 0 || indexWriter.hasUncommittedChanges()
+                    || !checkpointTracker.current().equals(committedCheckpoint)
+                    || !checkpointTracker.failedIds().equals(committedFailedIds))) {
+            commit();
+        }
+        if (reopenThread != null) {
+            reopenThread.close();
+        }
+        if (searcherManager != null) {
+            searcherManager.close();
+        }
+        if (indexWriter != null) {
+            logger.info("Closing IndexWriter...");
+            indexWriter.close();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.smartdocfinder.core.service;
+
+import com.smartdocfinder.core.model.DocumentEntity;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Moves Lucene writes off the ingestion threads onto a dedicated pool of indexing lanes.
+ * Each lane is a single thread with a bounded queue, and every document id always maps to
+ * the same lane, so updates and deletes of one document are applied in the order they were
+ * submitted while different documents are indexed in parallel. A full lane blocks the
+ * submitter, which is how indexing pushes back on ingestion.
+ * Documents that fail are retried with exponential backoff, unless a newer update or delete of the
+ * same id has been queued in the meantime (the retry would undo it); after the last attempt they are
+ * dead-lettered (counted and kept in a short list for the stats endpoint). A batch's checkpoint
+ * ticket is released once each of its documents is either in the writer or dead-lettered; dead-lettered
+ * ids are recorded with the checkpoint instead, and the next startup reconciliation re-indexes just those.
+ */
+@Component
+public class LuceneIndexingQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(LuceneIndexingQueue.class);
+    private static final int DEAD_LETTER_HISTORY = 100;
+
+    private final LuceneService luceneService;
+    private final IndexCheckpointTracker checkpointTracker;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final long maxRetryBackoffMs;
+    private final List<ThreadPoolExecutor> lanes = new ArrayList<>();
+    private final ScheduledExecutorService retryScheduler;
+
+    private final AtomicLong indexed = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private final Deque<Long> recentDeadLetters = new ArrayDeque<>();
+
+    // Generation of the newest write queued for each id that has not finished yet.
+    private final AtomicLong generations = new AtomicLong();
+    private final ConcurrentHashMap<Long, Long> latestWrite = new ConcurrentHashMap<>();
+
+    private record Write<T>(T item, long id, long generation) {}
+
+    /**
+     * Point-in-time view of the indexing lanes, for the stats endpoint.
+     */
+    public record IndexingStats(int lanes, int queuedTasks, long indexed, long deleted, long retried,
+                                long superseded, long deadLettered, List<Long> recentDeadLetters) {}
+
+    public LuceneIndexingQueue(LuceneService luceneService,
+                               IndexCheckpointTracker checkpointTracker,
+                               @Value("${indexing.writer.threads:4}") int threads,
+                               @Value("${indexing.writer.queue-capacity:64}") int queueCapacity,
+                               @Value("${indexing.writer.max-attempts:5}") int maxAttempts,
+                               @Value("${indexing.writer.retry-backoff-ms:1000}") long retryBackoffMs,
+                               @Value("${indexing.writer.max-retry-backoff-ms:60000}") long maxRetryBackoffMs) {
+        this.luceneService = luceneService;
+        this.checkpointTracker = checkpointTracker;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxRetryBackoffMs = maxRetryBackoffMs;
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            String name = "lucene-index-" + i;
+            ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> new Thread(r, name),
+                    LuceneIndexingQueue::blockUntilQueued);
+            lanes.add(lane);
+        }
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lucene-index-retry");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Queues documents for (re)indexing. Returns once every lane has accepted its share.
+     * The ticket, if any, is released after the last of them has been written.
+     */
+    public void index(List<DocumentEntity> documents, IndexCheckpointTracker.Ticket ticket) {
+        List<List<DocumentEntity>> perLane = partition(documents, DocumentEntity::getId);
+        int lanesUsed = (int) perLane.stream().filter(l -> !l.isEmpty()).count();
+        AtomicInteger remaining = new AtomicInteger(lanesUsed);
+        Runnable laneDone = () -> {
+            if (remaining.decrementAndGet() == 0 && ticket != null) {
+                ticket.release();
+            }
+        };
+        if (lanesUsed == 0 && ticket != null) {
+            ticket.release();
+        }
+        for (int i = 0; i < perLane.size(); i++) {
+            if (!perLane.get(i).isEmpty()) {
+                int lane = i;
+                enqueue(lane, perLane.get(i), DocumentEntity::getId, writes -> submitIndex(lane, writes, 1, laneDone));
+            }
+        }
+    }
+
+    /**
+     * Queues removal of documents and their vectors, ordered after any pending update of the same ids.
+     * The ids are recorded as pending until the delete is applied, so a commit in between carries
+     * them to the next startup, where reconciliation removes ids that have no row.
+     */
+    public void delete(List<Long> documentIds) {
+        checkpointTracker.markFailed(documentIds);
+        List<List<Long>> perLane = partition(documentIds, id -> id);
+        for (int i = 0; i < perLane.size(); i++) {
+            if (!perLane.get(i).isEmpty()) {
+                int lane = i;
+                enqueue(lane, perLane.get(i), id -> id, writes -> submitDelete(lane, writes, 1));
+            }
+        }
+    }
+
+    // Stamps each write with a new generation for its id. Holding the lane while stamping and queueing
+    // keeps generations in the same order as the lane applies the writes.
+    private <T> void enqueue(int lane, List<T> items, Function<T, Long> idOf, Consumer<List<Write<T>>> submit) {
+        synchronized (lanes.get(lane)) {
+            List<Write<T>> writes = new ArrayList<>(items.size());
+            for (T item : items) {
+                long id = idOf.apply(item);
+                long generation = generations.incrementAndGet();
+                latestWrite.put(id, generation);
+                writes.add(new Write<>(item, id, generation));
+            }
+            submit.accept(writes);
+        }
+    }
+
+    private void submitIndex(int lane, List<Write<DocumentEntity>> writes, int attempt, Runnable onDone) {
+        execute(lane, () -> {
+            List<Write<DocumentEntity>> failed = new ArrayList<>();
+            List<Write<DocumentEntity>> written = new ArrayList<>();
+            for (Write<DocumentEntity> write : current(writes, attempt)) {
+                DocumentEntity doc = write.item();
+                try {
+                    luceneService.indexDocument(doc.getId(), doc.getFileName(), doc.getContent());
+                    indexed.incrementAndGet();
+                    written.add(write);
+                } catch (Exception e) {
+                    logger.warn("Indexing document ID {} failed (attempt {}/{}).", doc.getId(), attempt, maxAttempts, e);
+                    failed.add(write);
+                }
+            }
+            finished(written);
+            if (failed.isEmpty() || !retryOrDeadLetter(attempt, failed, () -> submitIndex(lane, failed, attempt + 1, onDone))) {
+                onDone.run();
+            }
+        });
+    }
+
+    private void submitDelete(int lane, List<Write<Long>> writes, int attempt) {
+        execute(lane, () -> {
+            List<Write<Long>> live = current(writes, attempt);
+            if (live.isEmpty()) {
+                return;
+            }
+            try {
+                luceneService.deleteDocuments(live.stream().map(Write::item).toList());
+                deleted.addAndGet(live.size());
+                finished(live);
+            } catch (Exception e) {
+                logger.warn("Deleting {} documents failed (attempt {}/{}).", live.size(), attempt, maxAttempts, e);
+                retryOrDeadLetter(attempt, live, () -> submitDelete(lane, live, attempt + 1));
+            }
+        });
+    }
+
+    // A retry runs after writes queued later; drop the ones a newer write of the same id has replaced.
+    private <T> List<Write<T>> current(List<Write<T>> writes, int attempt) {
+        if (attempt == 1) {
+            return writes;
+        }
+        List<Write<T>> live = new ArrayList<>(writes.size());
+        for (Write<T> write : writes) {
+            if (latestWrite.getOrDefault(write.id(), write.generation()) == write.generation()) {
+                live.add(write);
+            } else {
+                superseded.incrementAndGet();
+                logger.debug("Dropping retry for document ID {}: a newer write replaced it.", write.id());
+            }
+        }
+        return live;
+    }
+
+    private void finished(List<? extends Write<?>> writes) {
+        if (writes.isEmpty()) {
+            return;
+        }
+        for (Write<?> write : writes) {
+            latestWrite.remove(write.id(), write.generation());
+        }
+        checkpointTracker.clearFailed(writes.stream().map(Write::id).toList());
+    }
+
+    /**
+     * Schedules the retry and returns true, or dead-letters the writes and returns false.
+     */
+    private boolean retryOrDeadLetter(int attempt, List<? extends Write<?>> writes, Runnable retry) {
+        List<Long> ids = writes.stream().map(Write::id).toList();
+        if (attempt >= maxAttempts) {
+            for (Write<?> write : writes) {
+                latestWrite.remove(write.id(), write.generation());
+            }
+            checkpointTracker.markFailed(ids);
+            deadLettered.addAndGet(ids.size());
+            synchronized (recentDeadLetters) {
+                for (Long id : ids) {
+                    recentDeadLetters.addLast(id);
+                    if (recentDeadLetters.size() > DEAD_LETTER_HISTORY) {
+                        recentDeadLetters.removeFirst();
+                    }
+                }
+            }
+            logger.error("Giving up on {} documents after {} attempts; they are re-indexed on the next startup: {}",
+                    ids.size(), attempt, ids);
+            return false;
+        }
+        retried.addAndGet(ids.size());
+        long delay = Math.min(maxRetryBackoffMs, retryBackoffMs << Math.min(attempt - 1, 20));
+        try {
+            retryScheduler.schedule(retry, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Deletes are recorded already; record index writes too, so the next startup retries them by id.
+            checkpointTracker.markFailed(ids);
+            logger.warn("Indexing retry for {} documents dropped during shutdown.", ids.size());
+        }
+        return true;
+    }
+
+    private void execute(int lane, Runnable task) {
+        try {
+            lanes.get(lane).execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Indexing lane {} is shut down; dropping task.", lane);
+        }
+    }
+
+    private <T> List<List<T>> partition(List<T> items, Function<T, Long> idOf) {
+        List<List<T>> perLane = new ArrayList<>(lanes.size());
+        for (int i = 0; i < lanes.size(); i++) {
+            perLane.add(new ArrayList<>());
+        }
+        for (T item : items) {
+            perLane.get((int) Math.floorMod(idOf.apply(item), (long) lanes.size())).add(item);
+        }
+        return perLane;
+    }
+
+    // Back-pressure: wait for room in the lane instead of failing or running on the caller's thread,
+    // which would break the per-document ordering.
+    private static void blockUntilQueued(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Indexing lane is shut down");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for an indexing lane", e);
+        }
+    }
+
+    public IndexingStats getStats() {
+        int queued = 0;
+        for (ThreadPoolExecutor lane : lanes) {
+            queued += lane.getQueue().size();
+        }
+        List<Long> recent;
+        synchronized (recentDeadLetters) {
+            recent = List.copyOf(recentDeadLetters);
+        }
+        return new IndexingStats(lanes.size(), queued, indexed.get(), deleted.get(), retried.get(),
+                superseded.get(), deadLettered.get(), recent);
+    }
+
+    /**
+     * Lets queued writes finish before LuceneIndexManager closes the writer.
+     */
+    @PreDestroy
+    private void shutdown() throws InterruptedException {
+        retryScheduler.shutdownNow();
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Indexing lane did not drain in time; {} tasks dropped.", lane.shutdownNow().size());
+            }
+        }
+    }
+}
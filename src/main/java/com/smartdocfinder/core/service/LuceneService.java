@@ -1,86 +1,386 @@
 package com.smartdocfinder.core.service;
 
 import com.smartdocfinder.core.ai.EmbeddingClient;
-import com.smartdocfinder.core.dto.MultiEmbeddingResponse;
+import com.smartdocfinder.core.dto.EmbeddingResultMessage;
 import com.smartdocfinder.core.dto.RAGResponse;
 import com.smartdocfinder.core.dto.SearchResult;
 import com.smartdocfinder.core.dto.SemanticSearchResponse;
-import com.smartdocfinder.core.model.DocumentEntity;
-import com.smartdocfinder.core.repository.DocumentRepository;
-import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
+import com.smartdocfinder.core.repository.DocumentContentRepository;
+import com.smartdocfinder.core.repository.DocumentContentRepositoryCustom.PassageText;
+import com.smartdocfinder.core.repository.DocumentContentRepositoryCustom.TextRange;
+import com.smartdocfinder.core.util.PassageChunker;
+import com.smartdocfinder.core.util.RankFusion;
+import com.smartdocfinder.core.util.SingleFlight;
 import lombok.RequiredArgsConstructor;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.KnnFloatVectorField;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.*;
 import org.apache.lucene.queryparser.classic.MultiFieldQueryParser;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
-import org.apache.lucene.search.highlight.Highlighter;
-import org.apache.lucene.search.highlight.QueryScorer;
-import org.apache.lucene.store.Directory;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.LengthGoalBreakIterator;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.IOException;
+import java.text.BreakIterator;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor // ✅ Best Practice: Use constructor injection for required dependencies.
 public class LuceneService {
 
+    // Index layout: each document is a block of passage documents followed by one parent document,
+    // all sharing DOC_KEY_FIELD so the whole block is replaced in one updateDocuments call.
+    public static final String DOC_KEY_FIELD = "doc_key";
+    public static final String TYPE_FIELD = "type";
+    public static final String PARENT_TYPE = "parent";
+    public static final String PASSAGE_TYPE = "passage";
+    // The database id, on passages, parents and vector documents alike: a LongPoint for lookups and
+    // doc values for reading it per hit, so retrieval never decodes stored fields just to learn an id.
+    public static final String DOC_ID_FIELD = "doc_id";
+    public static final String PASSAGE_NO_FIELD = "passage_no";
+    // Where a passage's text is in document_contents, in code points (as PostgreSQL's substr counts).
+    // The index keeps no text of its own: passages are indexed from it, but not stored.
+    public static final String PASSAGE_START_FIELD = "passage_start";
+    public static final String PASSAGE_LENGTH_FIELD = "passage_length";
+    // Parent documents only: the raw filename as doc values, read by FilenameSuggester.
+    public static final String FILENAME_SUGGEST_FIELD = "filename_suggest";
+
     private static final Logger logger = LoggerFactory.getLogger(LuceneService.class);
     private static final int SNIPPET_LENGTH = 200;
     private static final int RRF_K = 60; // Reciprocal Rank Fusion 'k' constant
+    // Vector hits below this cosine similarity are not semantic candidates.
+    private static final float SEMANTIC_MIN_SCORE = 0.3f;
+    // Stored fields decoded once per returned result; ranking reads ids from doc values only.
+    private static final Set<String> RANGE_FIELDS = Set.of(PASSAGE_START_FIELD, PASSAGE_LENGTH_FIELD);
+    private static final String[] SNIPPET_FIELDS = {"content"};
+    static final Query PASSAGES_ONLY = new TermQuery(new Term(TYPE_FIELD, PASSAGE_TYPE));
+
+    // Content postings carry character offsets, so the highlighter reads match positions
+    // straight from the index and only needs the passage text itself from the database.
+    private static final FieldType CONTENT_FIELD_TYPE = new FieldType(TextField.TYPE_NOT_STORED);
+    static {
+        CONTENT_FIELD_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        CONTENT_FIELD_TYPE.freeze();
+    }
 
     // ✅ Dependencies are final and injected via the constructor by Lombok
-    private final Directory luceneDirectory;
+    private final LuceneIndexManager indexManager;
     private final Analyzer luceneAnalyzer;
     private final SemanticSearchService semanticSearchService;
     private final EmbeddingClient embeddingClient;
-    private final DocumentRepository documentRepository; // Inject repository for batch fetching
     private final RerankerService rerankerService;
-    private static final int INITIAL_RETRIEVAL_SIZE = 50; // Retrieve 50 candidates
+    private static final int PASSAGES_PER_CANDIDATE = 4; // Passages fetched per wanted document before collapsing
     private static final int RERANKED_TOP_K = 5;   
+    private static final String NO_RESULTS_ANSWER = "I could not find any relevant documents to answer your question.";
     private final GeneratorService generatorService;
+    private final ExecutorService searchExecutor; // Bounded pool for the parallel retrieval branches
+    private final RagResponseCache responseCache;
+    private final DocumentContentRepository contentRepository;
+
+    // Identical questions in flight share one pipeline run. Pipelines get their own executor so they
+    // never compete with their own retrieval branches for searchExecutor slots.
+    private final ExecutorService pipelineExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("rag-pipeline-", 0).factory());
+    private final SingleFlight<String, RAGResponse> inFlightSearches = new SingleFlight<>(pipelineExecutor);
+    private final Map<String, Flux<ServerSentEvent<Object>>> inFlightStreams = new ConcurrentHashMap<>();
+
+    /**
+     * Fused retrieval results (only as many as the caller kept, with their text loaded) and how
+     * many documents the fusion ranked in total.
+     */
+    record Candidates(List<SearchResult> results, int total) {}
+
+    /**
+     * Request coalescing counters, for the stats endpoint.
+     */
+    public record CoalescingStats(int inFlight, long started, long coalesced, long abandoned, int inFlightStreams) {}
+
+    @Value("${search.keyword.timeout-ms:5000}")
+    private long keywordTimeoutMs;
+
+    @Value("${search.semantic.timeout-ms:10000}")
+    private long semanticTimeoutMs;
+
+    // Per-document highlighting budget: characters of a passage the highlighter may look at.
+    @Value("${search.highlight.max-chars:20000}")
+    private int highlightMaxChars;
+
+    // Candidate depth per retrieval branch; the fused list is then cut adaptively before re-ranking.
+    @Value("${search.rerank.max-candidates:50}")
+    private int maxCandidates;
+
+    @Value("${search.rerank.min-candidates:10}")
+    private int minCandidates;
+
+    // Candidates beyond minCandidates are kept only while their keyword (BM25) or semantic (cosine) score
+    // is at least this share of the way from that branch's floor to its top score.
+    @Value("${search.rerank.relative-score-cutoff:0.4}")
+    private float relativeScoreCutoff;
+
+    @Value("${indexing.passage.size:1000}")
+    private int passageSize;
+
+    @Value("${indexing.passage.overlap:150}")
+    private int passageOverlap;
+
+    /**
+     * ✅ REFACTORED: Uses the shared IndexWriter owned by LuceneIndexManager.
+     * The text is split into overlapping passages that are indexed as child documents, followed
+     * by a parent document carrying the id and filename; the block replaces the previous one atomically.
+     * The text itself is not stored: it lives in document_contents, and passages record their range in it.
+     * The change becomes searchable on the next NRT refresh; the returned sequence number
+     * can be passed to LuceneIndexManager.waitForGeneration when a caller needs to read its own write.
+     * Field instances are reused per thread: IndexWriter consumes the block before returning,
+     * so only the values change between calls.
+     */
+    public long indexDocument(Long id, String filename, String content) throws IOException {
+        String key = id.toString();
+        List<PassageChunker.Passage> passages = PassageChunker.chunk(content, passageSize, passageOverlap);
+        List<Document> block = REUSABLE_BLOCK.get().fill(id, key, filename, content, passages);
+        // Use the shared writer to replace the whole block.
+        long seqNo = indexManager.getIndexWriter().updateDocuments(new Term(DOC_KEY_FIELD, key), block);
+        indexManager.recordWrites(block.size(), 2L * (filename.length() * block.size() + content.length()));
+        return seqNo;
+    }
+
+    private static final ThreadLocal<ReusableBlock> REUSABLE_BLOCK = ThreadLocal.withInitial(ReusableBlock::new);
+
+    // A document block's fields, built once per indexing thread and grown to the largest passage count seen.
+    private static final class ReusableBlock {
+        private final List<PassageFields> passages = new ArrayList<>();
+        private final Field parentKey = new StringField(DOC_KEY_FIELD, "", Field.Store.NO);
+        private final LongPoint parentIdPoint = new LongPoint(DOC_ID_FIELD, 0L);
+        private final NumericDocValuesField parentIdValue = new NumericDocValuesField(DOC_ID_FIELD, 0L);
+        private final Field parentFilename = new TextField("filename", "", Field.Store.YES);
+        private final BinaryDocValuesField filenameSuggest = new BinaryDocValuesField(FILENAME_SUGGEST_FIELD, new BytesRef());
+        private final Document parent = new Document();
+
+        ReusableBlock() {
+            parent.add(parentKey);
+            parent.add(new StringField(TYPE_FIELD, PARENT_TYPE, Field.Store.NO));
+            parent.add(parentIdPoint);
+            parent.add(parentIdValue);
+            parent.add(parentFilename);
+            parent.add(filenameSuggest);
+        }
+
+        List<Document> fill(long id, String key, String filename, String content, List<PassageChunker.Passage> chunks) {
+            while (passages.size() < chunks.size()) {
+                passages.add(new PassageFields());
+            }
+            List<Document> block = new ArrayList<>(chunks.size() + 1);
+            // Passages start in increasing order, so code points are counted in one pass over the text.
+            int charStart = 0;
+            int codePointStart = 0;
+            for (int i = 0; i < chunks.size(); i++) {
+                PassageChunker.Passage chunk = chunks.get(i);
+                codePointStart += content.codePointCount(charStart, chunk.start());
+                charStart = chunk.start();
+                int codePoints = chunk.text().codePointCount(0, chunk.text().length());
+                block.add(passages.get(i).fill(id, key, filename, i, codePointStart, codePoints, chunk.text()));
+            }
+            parentKey.setStringValue(key);
+            parentIdPoint.setLongValue(id);
+            parentIdValue.setLongValue(id);
+            parentFilename.setStringValue(filename);
+            filenameSuggest.setBytesValue(new BytesRef(filename));
+            block.add(parent); // Parent last, as block joins expect
+            return block;
+        }
+    }
+
+    private static final class PassageFields {
+        private final Field key = new StringField(DOC_KEY_FIELD, "", Field.Store.NO);
+        private final LongPoint parentIdPoint = new LongPoint(DOC_ID_FIELD, 0L);
+        private final NumericDocValuesField parentIdValue = new NumericDocValuesField(DOC_ID_FIELD, 0L);
+        private final StoredField passageNo = new StoredField(PASSAGE_NO_FIELD, 0);
+        private final StoredField passageStart = new StoredField(PASSAGE_START_FIELD, 0);
+        private final StoredField passageLength = new StoredField(PASSAGE_LENGTH_FIELD, 0);
+        // Filename is indexed on every passage so filename matches still rank the document's passages;
+        // only the parent stores it.
+        private final Field filename = new TextField("filename", "", Field.Store.NO);
+        private final Field content = new Field("content", "", CONTENT_FIELD_TYPE);
+        private final Document document = new Document();
+
+        PassageFields() {
+            document.add(key);
+            document.add(new StringField(TYPE_FIELD, PASSAGE_TYPE, Field.Store.NO));
+            document.add(parentIdPoint);
+            document.add(parentIdValue);
+            document.add(passageNo);
+            document.add(passageStart);
+            document.add(passageLength);
+            document.add(filename);
+            document.add(content);
+        }
+
+        Document fill(long parentId, String parentKey, String filenameValue, int number,
+                      int start, int length, String text) {
+            key.setStringValue(parentKey);
+            parentIdPoint.setLongValue(parentId);
+            parentIdValue.setLongValue(parentId);
+            passageNo.setIntValue(number);
+            passageStart.setIntValue(start);
+            passageLength.setIntValue(length);
+            filename.setStringValue(filenameValue);
+            content.setStringValue(text);
+            return document;
+        }
+    }
 
-    private IndexWriter indexWriter;
+    /**
+     * Removes documents and their vectors from the index. Like indexDocument, the deletes
+     * become visible on the next NRT refresh; the returned sequence number covers all of them.
+     */
+    public long deleteDocuments(List<Long> ids) throws IOException {
+        if (ids.isEmpty()) {
+            return -1;
+        }
+        Term[] terms = new Term[ids.size() * 2];
+        int i = 0;
+        for (Long id : ids) {
+            terms[i++] = new Term(DOC_KEY_FIELD, id.toString());
+            terms[i++] = new Term(SemanticSearchService.VECTOR_OWNER_FIELD, id.toString());
+        }
+        long seqNo = indexManager.getIndexWriter().deleteDocuments(terms);
+        indexManager.recordWrites(ids.size(), 0);
+        return seqNo;
+    }
 
     /**
-     * ✅ CORRECT LIFECYCLE: Creates a single, long-lived IndexWriter instance.
-     * This is crucial for performance and correctness.
+     * Ids of the documents the index holds text or a vector for, ascending and after afterId. Reads at
+     * most limit index documents, so a page can hold fewer ids; an empty list means the end was reached.
      */
-    @PostConstruct
-    private void init() throws IOException {
-        IndexWriterConfig iwc = new IndexWriterConfig(luceneAnalyzer);
-        iwc.setRAMBufferSizeMB(256.0);
-        iwc.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-        this.indexWriter = new IndexWriter(luceneDirectory, iwc);
-        logger.info("Initialized shared IndexWriter with {}MB RAM buffer.", iwc.getRAMBufferSizeMB());
+    public List<Long> findIndexedIds(long afterId, int limit) throws IOException {
+        IndexSearcher searcher = indexManager.acquireSearcher();
+        try {
+            Query owners = new BooleanQuery.Builder()
+                    .add(new TermQuery(new Term(TYPE_FIELD, PARENT_TYPE)), BooleanClause.Occur.SHOULD)
+                    .add(new FieldExistsQuery(SemanticSearchService.VECTOR_FIELD), BooleanClause.Occur.SHOULD)
+                    .build();
+            Query query = new BooleanQuery.Builder()
+                    .add(owners, BooleanClause.Occur.FILTER)
+                    .add(LongPoint.newRangeQuery(DOC_ID_FIELD, Math.addExact(afterId, 1), Long.MAX_VALUE), BooleanClause.Occur.FILTER)
+                    .build();
+            TopDocs hits = searcher.search(query, limit, new Sort(new SortField(DOC_ID_FIELD, SortField.Type.LONG)));
+            long[] ids = readDocIds(searcher.getIndexReader(), hits.scoreDocs);
+            return Arrays.stream(ids).distinct().boxed().toList();
+        } finally {
+            indexManager.releaseSearcher(searcher);
+        }
     }
 
     /**
-     * ✅ REFACTORED: Uses the shared IndexWriter instance.
-     * This is much more efficient than creating a new writer for every document.
+     * Writes finished document embeddings next to the text fields in the same index.
+     * Each vector lives in its own document keyed by the owning id, so a batch is a
+     * single pass of updates on the shared writer and never touches the text documents.
+     * Invalid results (no id, empty, non-finite or zero vectors, or a dimension that differs from
+     * the indexed vectors) are skipped one by one, so one bad message cannot sink its batch.
+     * Returns how many were skipped; an IOException means the writer itself failed.
      */
-    public void indexDocument(Long id, String filename, String content) throws IOException {
-        Document doc = new Document();
-        doc.add(new StringField("id", id.toString(), Field.Store.YES));
-        doc.add(new TextField("filename", filename, Field.Store.YES));
-        doc.add(new TextField("filename_autocomplete", filename, Field.Store.NO));
-        doc.add(new TextField("content", content, Field.Store.YES));
-        // Use the shared writer to update the document.
-        this.indexWriter.updateDocument(new Term("id", id.toString()), doc);
+    public int indexEmbeddings(List<EmbeddingResultMessage> results) throws IOException {
+        IndexWriter writer = indexManager.getIndexWriter();
+        int dimension = indexedVectorDimension();
+        int skipped = 0;
+        for (EmbeddingResultMessage result : results) {
+            String problem = validateEmbedding(result, dimension);
+            if (problem != null) {
+                logger.warn("Skipping embedding result for document ID {}: {}.", result.getDocumentId(), problem);
+                skipped++;
+                continue;
+            }
+            String ownerId = result.getDocumentId().toString();
+            Document doc = new Document();
+            doc.add(new StringField(SemanticSearchService.VECTOR_OWNER_FIELD, ownerId, Field.Store.NO));
+            // Same schema as on passages and parents: Lucene rejects a field whose points and doc values differ per document.
+            doc.add(new LongPoint(DOC_ID_FIELD, result.getDocumentId()));
+            doc.add(new NumericDocValuesField(DOC_ID_FIELD, result.getDocumentId()));
+            doc.add(new KnnFloatVectorField(SemanticSearchService.VECTOR_FIELD, result.getVector(),
+                    VectorSimilarityFunction.COSINE));
+            try {
+                writer.updateDocument(new Term(SemanticSearchService.VECTOR_OWNER_FIELD, ownerId), doc);
+            } catch (IllegalArgumentException e) {
+                // Rejected before it reached the writer's buffers (e.g. a field schema conflict); the writer is fine.
+                logger.warn("Skipping embedding result for document ID {}: {}.", ownerId, e.getMessage());
+                skipped++;
+                continue;
+            }
+            dimension = result.getVector().length;
+            indexManager.recordWrites(1, Float.BYTES * (long) result.getVector().length);
+        }
+        return skipped;
+    }
+
+    // Dimension of the vectors already in the index, or 0 if there are none yet.
+    private int indexedVectorDimension() throws IOException {
+        IndexSearcher searcher = indexManager.acquireSearcher();
+        try {
+            FieldInfo field = FieldInfos.getMergedFieldInfos(searcher.getIndexReader())
+                    .fieldInfo(SemanticSearchService.VECTOR_FIELD);
+            return field == null ? 0 : field.getVectorDimension();
+        } finally {
+            indexManager.releaseSearcher(searcher);
+        }
+    }
+
+    private static String validateEmbedding(EmbeddingResultMessage result, int dimension) {
+        if (result.getDocumentId() == null) {
+            return "no document id";
+        }
+        float[] vector = result.getVector();
+        if (vector == null || vector.length == 0) {
+            return "no vector";
+        }
+        if (dimension != 0 && vector.length != dimension) {
+            return "dimension " + vector.length + " instead of " + dimension;
+        }
+        double norm = 0;
+        for (float v : vector) {
+            if (!Float.isFinite(v)) {
+                return "non-finite component";
+            }
+            norm += (double) v * v;
+        }
+        // Cosine similarity is undefined for a zero vector.
+        return norm == 0 ? "zero vector" : null;
     }
 
     /**
@@ -88,57 +388,305 @@ public class LuceneService {
      * The complex steps of fetching, ranking, and merging are delegated to private methods.
      */
     public RAGResponse search(String queryStr) throws Exception {
+        return search(queryStr, true);
+    }
+
+    /**
+     * Runs the full pipeline, serving identical questions against an unchanged index from the response cache.
+     * Passing useCache=false forces a fresh answer, which then replaces the cached one.
+     */
+    public RAGResponse search(String queryStr, boolean useCache) throws Exception {
+        CompletableFuture<RAGResponse> response = searchAsync(queryStr, useCache);
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            response.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
+    /**
+     * Like search, but returns this caller's handle on the answer. Concurrent calls for the same
+     * normalized question attach to one running pipeline and all receive its response. Cancelling
+     * the returned future detaches the caller; the pipeline itself is cancelled once nobody waits for it.
+     */
+    public CompletableFuture<RAGResponse> searchAsync(String queryStr, boolean useCache) {
+        String normalizedQuery = normalizeQuery(queryStr);
+        if (useCache) {
+            try {
+                RAGResponse cached = responseCache.get(normalizedQuery, indexManager.currentIndexVersion());
+                if (cached != null) {
+                    logger.info("Serving cached answer for query: '{}'", queryStr);
+                    return CompletableFuture.completedFuture(cached);
+                }
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        // Only misses get here, so a forced-fresh request can safely share a run that is already under way.
+        return inFlightSearches.join(normalizedQuery, () -> {
+            long indexVersion = indexManager.currentIndexVersion();
+            RAGResponse response = runPipeline(queryStr);
+            if (!GeneratorService.isFallbackAnswer(response.getGeneratedAnswer())) {
+                responseCache.put(normalizedQuery, indexVersion, response);
+            }
+            return response;
+        });
+    }
+
+    public CoalescingStats getCoalescingStats() {
+        return new CoalescingStats(inFlightSearches.inFlight(), inFlightSearches.startedCount(),
+                inFlightSearches.coalescedCount(), inFlightSearches.abandonedCount(), inFlightStreams.size());
+    }
+
+    private RAGResponse runPipeline(String queryStr) throws Exception {
+        List<SearchResult> finalContext = retrieveContext(queryStr);
+        if (finalContext.isEmpty()) {
+            return new RAGResponse(NO_RESULTS_ANSWER, List.of());
+        }
+
+        // 3. Generation
+        logger.info("--- Stage 3: Generating Answer from Top {} Documents ---", finalContext.size());
+        String generatedAnswer = generatorService.generateAnswer(queryStr, finalContext);
+
+        return new RAGResponse(generatedAnswer, finalContext);
+    }
+
+    /**
+     * Stages 1 and 2: hybrid retrieval followed by re-ranking, trimmed to the generator's context size.
+     */
+    private List<SearchResult> retrieveContext(String queryStr) throws Exception {
         // 1. Initial Retrieval (Hybrid Search)
         logger.info("--- Stage 1: Initial Retrieval ---");
-        List<SearchResult> initialCandidates = retrieveInitialCandidates(queryStr);
+        Candidates initialCandidates = retrieveInitialCandidates(queryStr, this::rerankCutoff);
+        List<SearchResult> rerankCandidates = initialCandidates.results();
 
-        if (initialCandidates.isEmpty()) {
+        if (rerankCandidates.isEmpty()) {
             logger.warn("No initial candidates found for query: '{}'", queryStr);
-            return new RAGResponse("I could not find any relevant documents to answer your question.", List.of());
+            return List.of();
         }
 
         // 2. Re-ranking
-        logger.info("--- Stage 2: Re-ranking Top {} Candidates ---", initialCandidates.size());
-        List<SearchResult> rerankedCandidates = rerankerService.rerank(queryStr, initialCandidates);
+        logger.info("--- Stage 2: Re-ranking Top {} of {} Candidates ---", rerankCandidates.size(), initialCandidates.total());
+        List<SearchResult> rerankedCandidates = rerankerService.rerank(queryStr, rerankCandidates);
+        return rerankedCandidates.stream().limit(RERANKED_TOP_K).collect(Collectors.toList());
+    }
 
-        // 3. Generation
-        logger.info("--- Stage 3: Generating Answer from Top {} Documents ---", RERANKED_TOP_K);
-        List<SearchResult> finalContext = rerankedCandidates.stream().limit(RERANKED_TOP_K).collect(Collectors.toList());
-        String generatedAnswer = generatorService.generateAnswer(queryStr, finalContext);
+    /**
+     * Adaptive cutoff on the fused list: the first minCandidates are always re-ranked, the rest only
+     * while one of their branch scores stays within relativeScoreCutoff of that branch's best. RRF
+     * scores are rank-based and nearly flat, so the raw BM25 and cosine scores decide: a clear winner
+     * keeps the reranker's work small; a flat score distribution sends more.
+     * Runs on primitive scores, so cut candidates never have their text loaded.
+     */
+    private int rerankCutoff(RankFusion.Fused fused) {
+        if (fused.size() <= minCandidates) {
+            return fused.size();
+        }
+        float keywordThreshold = threshold(fused.keywordScores(), 0f);
+        float semanticThreshold = threshold(fused.semanticScores(), SEMANTIC_MIN_SCORE);
+        int keep = minCandidates;
+        while (keep < fused.size()
+                && (fused.keywordScores()[keep] >= keywordThreshold || fused.semanticScores()[keep] >= semanticThreshold)) {
+            keep++;
+        }
+        return keep;
+    }
 
-        return new RAGResponse(generatedAnswer, finalContext);
+    // Scores are measured from the lowest score the branch can return, so cosine similarities,
+    // which bunch together above the semantic threshold, are not all "close to the top".
+    private float threshold(float[] scores, float floor) {
+        float top = floor;
+        for (float score : scores) {
+            top = Math.max(top, score);
+        }
+        if (top <= floor) {
+            return Float.POSITIVE_INFINITY; // Branch contributed nothing
+        }
+        return floor + (top - floor) * relativeScoreCutoff;
+    }
+
+    /**
+     * ✅ NEW: Streaming variant of search. Emits a "sources" event as soon as retrieval and re-ranking
+     * finish, then one "token" event per generated token, then "done". A completed answer is put into
+     * the response cache just like the blocking path.
+     * Identical streams in flight share one pipeline: a late subscriber is first replayed the events
+     * sent so far, and the pipeline is cancelled when its last subscriber disconnects.
+     */
+    public Flux<ServerSentEvent<Object>> streamSearch(String queryStr, boolean useCache) {
+        String normalizedQuery = normalizeQuery(queryStr);
+        // Forced-fresh streams only share with each other, never with one served from the cache.
+        String key = (useCache ? "cached:" : "fresh:") + normalizedQuery;
+        return Flux.defer(() -> inFlightStreams.computeIfAbsent(key,
+                k -> shareStream(k, runStream(queryStr, normalizedQuery, useCache))));
+    }
+
+    private Flux<ServerSentEvent<Object>> shareStream(String key, Flux<ServerSentEvent<Object>> source) {
+        AtomicReference<Flux<ServerSentEvent<Object>>> self = new AtomicReference<>();
+        Flux<ServerSentEvent<Object>> shared = source
+                .doFinally(signal -> inFlightStreams.remove(key, self.get()))
+                .replay()
+                .refCount();
+        self.set(shared);
+        return shared;
+    }
+
+    private Flux<ServerSentEvent<Object>> runStream(String queryStr, String normalizedQuery, boolean useCache) {
+        return Mono.fromCallable(() -> {
+                    long indexVersion = indexManager.currentIndexVersion();
+                    RAGResponse cached = useCache ? responseCache.get(normalizedQuery, indexVersion) : null;
+                    if (cached != null) {
+                        logger.info("Streaming cached answer for query: '{}'", queryStr);
+                        return new StreamContext(indexVersion, cached.getSearchResults(), cached);
+                    }
+                    return new StreamContext(indexVersion, retrieveContext(queryStr), null);
+                })
+                .subscribeOn(Schedulers.boundedElastic()) // Retrieval and re-ranking block
+                .flatMapMany(context -> {
+                    if (context.cached() != null) {
+                        return Flux.just(sseEvent("sources", context.sources()),
+                                sseEvent("token", context.cached().getGeneratedAnswer()),
+                                sseEvent("done", ""));
+                    }
+                    if (context.sources().isEmpty()) {
+                        return Flux.just(sseEvent("sources", List.of()),
+                                sseEvent("token", NO_RESULTS_ANSWER),
+                                sseEvent("done", ""));
+                    }
+
+                    logger.info("--- Stage 3: Streaming Answer from Top {} Documents ---", context.sources().size());
+                    StringBuilder answer = new StringBuilder();
+                    // A failed generation ends the stream with "error" alone; "done" means the answer is complete.
+                    Flux<ServerSentEvent<Object>> tokens = generatorService.streamAnswer(queryStr, context.sources())
+                            .doOnNext(answer::append)
+                            .doOnComplete(() -> {
+                                String fullAnswer = answer.toString();
+                                if (!fullAnswer.isBlank() && !GeneratorService.isFallbackAnswer(fullAnswer)) {
+                                    responseCache.put(normalizedQuery, context.indexVersion(),
+                                            new RAGResponse(fullAnswer, context.sources()));
+                                }
+                            })
+                            .map(token -> sseEvent("token", token))
+                            .concatWith(Mono.just(sseEvent("done", "")))
+                            .onErrorResume(e -> {
+                                logger.error("Answer generation failed for query: '{}'", queryStr, e);
+                                return Flux.just(sseEvent("error", "An error occurred while generating the answer."));
+                            });
+                    return Flux.concat(Flux.just(sseEvent("sources", context.sources())), tokens);
+                });
+    }
+
+    private record StreamContext(long indexVersion, List<SearchResult> sources, RAGResponse cached) {}
+
+    private static ServerSentEvent<Object> sseEvent(String name, Object data) {
+        return ServerSentEvent.<Object>builder().event(name).data(data).build();
     }
 
     /**
      * ✅ NEW: This method performs the initial hybrid search to get a large set of candidates.
+     * Both branches rank primitive database ids read from doc values; after fusion, keep decides how
+     * many of the best candidates are returned, and only those have their stored fields loaded.
      */
-    private List<SearchResult> retrieveInitialCandidates(String queryStr) throws Exception {
-        try (DirectoryReader reader = DirectoryReader.open(indexWriter)) {
-            IndexSearcher searcher = new IndexSearcher(reader);
+    Candidates retrieveInitialCandidates(String queryStr, ToIntFunction<RankFusion.Fused> keep) throws Exception {
+        // Share the warm NRT searcher instead of opening (and flushing) a new reader per query.
+        IndexSearcher searcher = indexManager.acquireSearcher();
+        try {
             String normalizedQuery = normalizeQuery(queryStr);
             Query luceneQuery = buildLuceneQuery(normalizedQuery);
-            TopDocs luceneHits = searcher.search(luceneQuery, INITIAL_RETRIEVAL_SIZE);
-
-            Map<String, Integer> luceneRankMap = createRankMap(luceneHits, searcher);
-            Map<String, Integer> semanticRankMap = getSemanticRankings(normalizedQuery, 0.3f);
-
-            Set<String> allDocIds = new HashSet<>(luceneRankMap.keySet());
-            allDocIds.addAll(semanticRankMap.keySet());
+            Query passageQuery = new BooleanQuery.Builder()
+                    .add(luceneQuery, BooleanClause.Occur.MUST)
+                    .add(PASSAGES_ONLY, BooleanClause.Occur.FILTER)
+                    .build();
+
+            // Keyword and semantic retrieval are independent until fusion, so run them side by side.
+            long startNanos = System.nanoTime();
+            Future<Ranking> semanticBranch;
+            try {
+                semanticBranch = submitBranch(searcher, () -> getSemanticRankings(searcher, normalizedQuery, SEMANTIC_MIN_SCORE));
+            } catch (RejectedExecutionException e) {
+                // Executor saturated: shed the expensive branch instead of queueing behind others.
+                logger.warn("Search executor saturated; returning keyword-only results.");
+                semanticBranch = CompletableFuture.completedFuture(Ranking.EMPTY);
+            }
+            // Several passages of one document can match, so fetch more than needed and collapse them.
+            int keywordDepth = maxCandidates * PASSAGES_PER_CANDIDATE;
+            TopDocs luceneHits;
+            Future<TopDocs> keywordBranch = null;
+            try {
+                keywordBranch = submitBranch(searcher, () -> searcher.search(passageQuery, keywordDepth));
+                luceneHits = keywordBranch.get(keywordTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // The caller waits for the keyword branch anyway, so run it here rather than fail.
+                luceneHits = searcher.search(passageQuery, keywordDepth);
+            } catch (Exception e) {
+                if (keywordBranch != null) {
+                    keywordBranch.cancel(true);
+                }
+                semanticBranch.cancel(true);
+                throw e;
+            }
 
-            Map<String, Document> luceneDocuments = fetchLuceneDocuments(searcher, luceneHits, allDocIds);
-            Map<Long, DocumentEntity> dbEntities = fetchDatabaseEntities(allDocIds, luceneRankMap.keySet());
+            KeywordRanking keywordRanking = collapseToDocuments(luceneHits, searcher);
+            Ranking semanticRanking = awaitSemanticRankings(semanticBranch, startNanos);
+            RankFusion.Fused fused = RankFusion.rrf(keywordRanking.ids(), keywordRanking.scores(),
+                    semanticRanking.ids(), semanticRanking.scores(), RRF_K);
+
+            int count = Math.min(Math.max(0, keep.applyAsInt(fused)), fused.size());
+            int[] passages = findResultPassages(searcher, luceneQuery, keywordRanking, fused, count);
+            int[] docs = compact(passages);
+            long[] docIds = new long[docs.length];
+            for (int i = 0, j = 0; i < count; i++) {
+                if (passages[i] >= 0) {
+                    docIds[j++] = fused.ids()[i];
+                }
+            }
+            List<PassageText> texts = readPassages(searcher, docIds, docs);
+            String[] snippets = createSnippets(luceneQuery, searcher, docs, texts);
+
+            List<SearchResult> results = new ArrayList<>(count);
+            for (int i = 0, passage = 0; i < count; i++) {
+                if (passages[i] < 0) {
+                    continue; // Vector arrived before its text document was indexed
+                }
+                PassageText text = texts.get(passage);
+                String snippet = snippets[passage++];
+                if (text == null) {
+                    continue; // Deleted from the database since this searcher was opened
+                }
+                results.add(buildFusedResult(fused.ids()[i], fused.scores()[i], fused.keywordRanks()[i],
+                        fused.semanticRanks()[i], text, snippet));
+            }
+            return new Candidates(results, fused.size());
+        } finally {
+            indexManager.releaseSearcher(searcher);
+        }
+    }
 
-            return allDocIds.stream()
-                .map(docId -> buildFusedResult(
-                        docId, luceneQuery, searcher,
-                        luceneRankMap.get(docId), semanticRankMap.get(docId),
-                        luceneDocuments.get(docId), dbEntities.get(Long.parseLong(docId))
-                ))
-                .filter(Objects::nonNull)
-                .sorted(Comparator.comparing(SearchResult::getHybridScore).reversed())
-                .collect(Collectors.toList());
+    /**
+     * Runs a retrieval branch on the search executor with its own reference to the searcher's reader.
+     * Cancelling a timed-out branch does not stop a running search, so the branch may outlive the
+     * caller's release; the extra reference keeps the reader open until the branch is done with it.
+     */
+    private <T> Future<T> submitBranch(IndexSearcher searcher, Callable<T> branch) {
+        IndexReader reader = searcher.getIndexReader();
+        reader.incRef();
+        try {
+            return searchExecutor.submit(() -> {
+                try {
+                    return branch.call();
+                } finally {
+                    reader.decRef();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            reader.decRef();
+            throw e;
         }
     }
+
     /**
      * ✅ NEW: This method calls the generator service to get a RAG response.
      */
@@ -174,126 +722,255 @@ public class LuceneService {
     
     // --- Helper Methods for Search Logic ---
 
-    private Map<String, Integer> getSemanticRankings(String query, float threshold) throws Exception {
-        MultiEmbeddingResponse embed = embeddingClient.embedQuery(query);
-        SemanticSearchResponse faissResults = semanticSearchService.search(embed.getBase());
-        
-        Map<String, Integer> rankMap = new HashMap<>();
-        int rank = 1;
-        for (var hit : faissResults.getHits()) {
+    /**
+     * Waits for the semantic branch within its own time budget. A slow or failed
+     * embedding/vector lookup degrades the search to keyword-only instead of failing it.
+     */
+    private Ranking awaitSemanticRankings(Future<Ranking> semanticBranch, long startNanos) {
+        long remainingMs = semanticTimeoutMs - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        try {
+            return semanticBranch.get(Math.max(remainingMs, 0), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            semanticBranch.cancel(true);
+            logger.warn("Semantic retrieval exceeded {}ms; returning keyword-only results.", semanticTimeoutMs);
+        } catch (ExecutionException e) {
+            logger.warn("Semantic retrieval failed; returning keyword-only results.", e.getCause());
+        } catch (InterruptedException e) {
+            semanticBranch.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return Ranking.EMPTY;
+    }
+
+    /**
+     * Database ids in rank order, with the branch's own score for each.
+     */
+    private record Ranking(long[] ids, float[] scores) {
+        static final Ranking EMPTY = new Ranking(new long[0], new float[0]);
+    }
+
+    private Ranking getSemanticRankings(IndexSearcher searcher, String query, float threshold) throws Exception {
+        float[] queryVector = embeddingClient.embedQuery(query);
+        // Vector top-k runs locally on the same point-in-time searcher as the keyword branch.
+        SemanticSearchResponse vectorResults = semanticSearchService.search(searcher, queryVector, maxCandidates);
+
+        long[] ranking = new long[vectorResults.getHits().size()];
+        float[] scores = new float[ranking.length];
+        int count = 0;
+        for (var hit : vectorResults.getHits()) {
             if (hit.getScore() >= threshold) {
-                rankMap.put(String.valueOf(hit.getDocId()), rank++);
+                scores[count] = hit.getScore();
+                ranking[count++] = hit.getDocId();
             }
         }
-        return rankMap;
+        return new Ranking(Arrays.copyOf(ranking, count), Arrays.copyOf(scores, count));
     }
 
-    private Map<String, Integer> createRankMap(TopDocs hits, IndexSearcher searcher) throws IOException {
-        Map<String, Integer> rankMap = new HashMap<>();
-        for (int i = 0; i < hits.scoreDocs.length; i++) {
-            Document doc = searcher.storedFields().document(hits.scoreDocs[i].doc);
-            rankMap.put(doc.get("id"), i + 1); // Rank is 1-based
+    /**
+     * Keyword ranking by document, with the BM25 score and doc number of each document's best passage.
+     */
+    private record KeywordRanking(long[] ids, float[] scores, int[] bestPassages) {}
+
+    /**
+     * Collapses passage hits to documents: a document is ranked by its best passage.
+     * Ids come from doc values; no stored field is decoded here.
+     */
+    private KeywordRanking collapseToDocuments(TopDocs hits, IndexSearcher searcher) throws IOException {
+        long[] hitIds = readDocIds(searcher.getIndexReader(), hits.scoreDocs);
+        long[] ids = new long[Math.min(maxCandidates, hitIds.length)];
+        float[] scores = new float[ids.length];
+        int[] bestPassages = new int[ids.length];
+        int count = 0;
+        for (int i = 0; i < hitIds.length && count < ids.length; i++) {
+            // Linear scan: at most maxCandidates documents, so cheaper than hashing.
+            boolean seen = false;
+            for (int j = 0; j < count && !seen; j++) {
+                seen = ids[j] == hitIds[i];
+            }
+            if (!seen) {
+                ids[count] = hitIds[i];
+                scores[count] = hits.scoreDocs[i].score;
+                bestPassages[count++] = hits.scoreDocs[i].doc;
+            }
         }
-        return rankMap;
+        return new KeywordRanking(Arrays.copyOf(ids, count), Arrays.copyOf(scores, count), Arrays.copyOf(bestPassages, count));
     }
-    
+
     /**
-     * ✅ NEW & EFFICIENT: Fetches Lucene documents needed for the result set.
+     * Reads DOC_ID_FIELD for every hit, visiting each segment's doc values once in doc order.
      */
-    private Map<String, Document> fetchLuceneDocuments(IndexSearcher searcher, TopDocs hits, Set<String> allDocIds) throws IOException {
-        Map<String, Document> docMap = new HashMap<>();
-        for (ScoreDoc scoreDoc : hits.scoreDocs) {
-            Document doc = searcher.storedFields().document(scoreDoc.doc);
-            String docId = doc.get("id");
-            if (allDocIds.contains(docId)) { // Only fetch if it's in the combined result set
-                docMap.put(docId, doc);
+    static long[] readDocIds(IndexReader reader, ScoreDoc[] hits) throws IOException {
+        long[] ids = new long[hits.length];
+        long[] order = new long[hits.length]; // Doc number in the high bits, hit index in the low bits
+        for (int i = 0; i < hits.length; i++) {
+            order[i] = ((long) hits[i].doc << 32) | i;
+        }
+        Arrays.sort(order);
+        List<LeafReaderContext> leaves = reader.leaves();
+        LeafReaderContext leaf = null;
+        NumericDocValues values = null;
+        for (long entry : order) {
+            int doc = (int) (entry >>> 32);
+            if (leaf == null || doc >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(ReaderUtil.subIndex(doc, leaves));
+                values = DocValues.getNumeric(leaf.reader(), DOC_ID_FIELD);
             }
+            if (!values.advanceExact(doc - leaf.docBase)) {
+                throw new IllegalStateException("Document " + doc + " has no " + DOC_ID_FIELD);
+            }
+            ids[(int) entry] = values.longValue();
         }
-        return docMap;
+        return ids;
     }
 
     /**
-     * ✅ NEW & EFFICIENT: Fetches DB entities for semantic-only results in a single batch query.
+     * ✅ The passage to show for each of the first count fused results: the best keyword hit where there
+     * is one, otherwise the document's passage that scores best against the keyword query (or its first
+     * one). -1 where the document has no passages in this searcher.
      */
-    private Map<Long, DocumentEntity> fetchDatabaseEntities(Set<String> allDocIds, Set<String> luceneDocIds) {
-        // Determine which IDs are ONLY in the semantic results and need fetching from the DB
-        Set<Long> idsToFetch = allDocIds.stream()
-            .filter(id -> !luceneDocIds.contains(id))
-            .map(Long::parseLong)
-            .collect(Collectors.toSet());
+    private int[] findResultPassages(IndexSearcher searcher, Query luceneQuery, KeywordRanking keywordRanking,
+                                     RankFusion.Fused fused, int count) throws IOException {
+        int[] passages = new int[count];
+        for (int i = 0; i < count; i++) {
+            int keywordRank = fused.keywordRanks()[i];
+            if (keywordRank != 0) {
+                passages[i] = keywordRanking.bestPassages()[keywordRank - 1];
+            } else {
+                Integer passage = findBestPassage(searcher, fused.ids()[i], luceneQuery);
+                passages[i] = passage == null ? -1 : passage;
+            }
+        }
+        return passages;
+    }
 
-        if (idsToFetch.isEmpty()) {
-            return Collections.emptyMap();
+    private static int[] compact(int[] passages) {
+        return Arrays.stream(passages).filter(doc -> doc >= 0).toArray();
+    }
+
+    /**
+     * Filename and text of each passage (docs[i] belongs to document ids[i]), read from
+     * document_contents by the range the passage recorded, in one query. Null where the
+     * document has been deleted from the database.
+     */
+    List<PassageText> readPassages(IndexSearcher searcher, long[] ids, int[] docs) throws IOException {
+        StoredFields storedFields = searcher.storedFields();
+        List<TextRange> ranges = new ArrayList<>(docs.length);
+        for (int i = 0; i < docs.length; i++) {
+            Document passage = storedFields.document(docs[i], RANGE_FIELDS);
+            ranges.add(new TextRange(ids[i], passage.getField(PASSAGE_START_FIELD).numericValue().intValue(),
+                    passage.getField(PASSAGE_LENGTH_FIELD).numericValue().intValue()));
         }
+        return contentRepository.findPassages(ranges);
+    }
 
-        // Fetch all required entities in one go
-        return documentRepository.findAllById(idsToFetch).stream()
-            .collect(Collectors.toMap(DocumentEntity::getId, Function.identity()));
+    /**
+     * Doc number of the document's passage that scores best against the query (its first
+     * passage if none matches), or null if the document has no passages in this searcher.
+     */
+    Integer findBestPassage(IndexSearcher searcher, long docId, Query luceneQuery) throws IOException {
+        Query bestPassage = new BooleanQuery.Builder()
+                .add(LongPoint.newExactQuery(DOC_ID_FIELD, docId), BooleanClause.Occur.FILTER)
+                .add(PASSAGES_ONLY, BooleanClause.Occur.FILTER)
+                .add(luceneQuery, BooleanClause.Occur.SHOULD)
+                .build();
+        TopDocs passages = searcher.search(bestPassage, 1);
+        return passages.scoreDocs.length == 0 ? null : passages.scoreDocs[0].doc;
     }
-    
+
     /**
      * ✅ NEW & REFACTORED: Builds a single search result with clear logic.
+     * The RRF score was already computed during fusion; ranks of 0 mean "not in that branch".
      */
-    private SearchResult buildFusedResult(String docId, Query luceneQuery, IndexSearcher searcher,
-                                          Integer luceneRank, Integer semanticRank,
-                                          Document luceneDoc, DocumentEntity dbEntity) {
-        try {
-            SearchResult result = new SearchResult();
-            result.setId(docId); 
-
-            // Populate main data (filename, snippet)
-            if (luceneDoc != null) {
-                // Data comes from the faster Lucene index
-                result.setFilename(luceneDoc.get("filename"));
-                result.setSnippet(createSnippet(luceneQuery, searcher, luceneDoc));
-            } else if (dbEntity != null) {
-                // Fallback for semantic-only results: data from the database
-                result.setFilename(dbEntity.getFileName());
-                String content = dbEntity.getContent();
-                result.setSnippet(content.length() > SNIPPET_LENGTH ? content.substring(0, SNIPPET_LENGTH) + "..." : content);
-            } else {
-                logger.warn("Could not find data source for document ID: {}", docId);
-                return null;
-            }
-
-            // Calculate Reciprocal Rank Fusion (RRF) score
-            float luceneRrf = (luceneRank != null) ? 1.0f / (RRF_K + luceneRank) : 0f;
-            float semanticRrf = (semanticRank != null) ? 1.0f / (RRF_K + semanticRank) : 0f;
-            result.setHybridScore(luceneRrf + semanticRrf); // Simple addition is common for RRF
+    private SearchResult buildFusedResult(long docId, float hybridScore, int luceneRank, int semanticRank,
+                                          PassageText passage, String snippet) {
+        SearchResult result = new SearchResult();
+        result.setId(Long.toString(docId));
+
+        // Populate main data (filename, snippet, best passage)
+        result.setFilename(passage.fileName());
+        result.setSnippet(snippet);
+        result.setPassage(passage.text());
+        result.setHybridScore(hybridScore);
+
+        // Set match type for debugging/UI
+        if (luceneRank != 0 && semanticRank != 0) {
+            result.setMatchType("hybrid");
+        } else if (luceneRank != 0) {
+            result.setMatchType("keyword");
+        } else {
+            result.setMatchType("semantic");
+        }
+        return result;
+    }
 
-            // Set match type for debugging/UI
-            if (luceneRank != null && semanticRank != null) {
-                result.setMatchType("hybrid");
-            } else if (luceneRank != null) {
-                result.setMatchType("keyword");
-            } else {
-                result.setMatchType("semantic");
+    /**
+     * Highlights the best passage of every result in one batch pass. Match offsets come from the
+     * postings and the text from readPassages (texts.get(i) is the passage at docs[i]); at most
+     * highlightMaxChars of each passage are considered. Passages without a match get their
+     * opening sentence. Returns one snippet per passage doc number, in the same order.
+     */
+    String[] createSnippets(Query query, IndexSearcher searcher, int[] docs, List<PassageText> texts) throws IOException {
+        if (docs.length == 0) {
+            return new String[0];
+        }
+        Map<Integer, String> textByDoc = new HashMap<>();
+        for (int i = 0; i < docs.length; i++) {
+            PassageText text = texts.get(i);
+            if (text != null && text.text() != null) {
+                textByDoc.put(docs[i], text.text().length() > highlightMaxChars
+                        ? text.text().substring(0, highlightMaxChars) : text.text());
             }
-            return result;
-        } catch (Exception e) {
-            logger.error("Failed to build result for docId: {}", docId, e);
-            return null;
         }
+        UnifiedHighlighter.Builder builder = UnifiedHighlighter.builder(searcher, luceneAnalyzer)
+                .withMaxLength(highlightMaxChars)
+                .withBreakIterator(() -> LengthGoalBreakIterator.createClosestToLength(
+                        BreakIterator.getSentenceInstance(Locale.ROOT), SNIPPET_LENGTH))
+                .withFormatter(new DefaultPassageFormatter("<B>", "</B>", "... ", false))
+                .withMaxNoHighlightPassages(1);
+        UnifiedHighlighter highlighter = new UnifiedHighlighter(builder) {
+            // Passages are not stored in the index; hand over the text read from the database.
+            @Override
+            protected List<CharSequence[]> loadFieldValues(String[] fields, DocIdSetIterator docIter,
+                                                           int cacheCharsThreshold) throws IOException {
+                List<CharSequence[]> values = new ArrayList<>();
+                for (int doc = docIter.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docIter.nextDoc()) {
+                    values.add(new CharSequence[] {textByDoc.getOrDefault(doc, "")});
+                }
+                return values;
+            }
+        };
+        String[] highlights = highlighter.highlightFields(SNIPPET_FIELDS, query, docs, new int[] {1}).get("content");
+
+        String[] snippets = new String[docs.length];
+        for (int i = 0; i < docs.length; i++) {
+            snippets[i] = trimSnippet(highlights[i]);
+        }
+        return snippets;
     }
-    
-    private String createSnippet(Query query, IndexSearcher searcher, Document doc) throws Exception {
-        String content = doc.get("content");
-        QueryScorer scorer = new QueryScorer(query, "content");
-        Highlighter highlighter = new Highlighter(scorer);
-        String bestFragment = highlighter.getBestFragment(luceneAnalyzer, "content", content);
-        
-        if (bestFragment != null && !bestFragment.isEmpty()) {
-            return bestFragment;
+
+    // Text without sentence breaks yields one huge passage; cut it without leaving a highlight tag open.
+    private static String trimSnippet(String snippet) {
+        if (snippet == null) {
+            return "";
+        }
+        int limit = SNIPPET_LENGTH * 2;
+        if (snippet.length() <= limit) {
+            return snippet;
+        }
+        String cut = snippet.substring(0, limit);
+        int partialTag = cut.lastIndexOf('<');
+        if (partialTag > cut.lastIndexOf('>')) {
+            cut = cut.substring(0, partialTag);
         }
-        // Fallback snippet
-        return content.length() > SNIPPET_LENGTH ? content.substring(0, SNIPPET_LENGTH) + "..." : content;
+        return cut.lastIndexOf("<B>") > cut.lastIndexOf("</B>") ? cut + "</B>..." : cut + "...";
     }
 
-    private String normalizeQuery(String queryStr) {
-        return queryStr.trim().toLowerCase();
+    // Also the cache key for query embeddings, so near-identical queries share one entry.
+    String normalizeQuery(String queryStr) {
+        return queryStr.trim().replaceAll("\\s+", " ").toLowerCase();
     }
     
-    private Query buildLuceneQuery(String normalizedQuery) {
+    Query buildLuceneQuery(String normalizedQuery) {
         try {
             String[] fields = {"filename", "content"};
             Map<String, Float> boosts = new HashMap<>();
@@ -309,15 +986,4 @@ public class LuceneService {
             return new MatchNoDocsQuery(); // Return a query that matches nothing
         }
     }
-
-    /**
-     * ✅ CORRECT LIFECYCLE: Ensures the IndexWriter is closed properly on shutdown.
-     */
-    @PreDestroy
-    private void cleanup() throws IOException {
-        if (indexWriter != null) {
-            logger.info("Closing IndexWriter...");
-            indexWriter.close();
-        }
-    }
 }
\ No newline at end of file
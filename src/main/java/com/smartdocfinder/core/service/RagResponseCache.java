@@ -0,0 +1,188 @@
+package com.smartdocfinder.core.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.smartdocfinder.core.dto.RAGResponse;
+import com.smartdocfinder.core.dto.SearchResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches complete RAG responses keyed by the normalized query, the index id and the Lucene index
+ * version. Any commit or NRT refresh bumps the version, so answers computed against an older index
+ * are simply never looked up again and age out of the cache. Persisted entries are only restored
+ * when they were computed against exactly the commit the next run opens.
+ */
+@Component
+public class RagResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RagResponseCache.class);
+
+    private final ObjectMapper objectMapper;
+    private final LuceneIndexManager indexManager;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final long emptyResultTtlMillis;
+    private final String persistPath;
+    private final Cache<Key, CachedResponse> cache;
+
+    private record Key(String indexId, long indexVersion, String normalizedQuery) {}
+
+    private record CachedResponse(RAGResponse response, long expiresAtMillis) {}
+
+    private record PersistedEntry(String indexId, long indexVersion, String normalizedQuery,
+                                  RAGResponse response, long expiresAtMillis) {}
+
+    public RagResponseCache(ObjectMapper objectMapper,
+                            LuceneIndexManager indexManager,
+                            @Value("${rag.cache.enabled:true}") boolean enabled,
+                            @Value("${rag.cache.max-size-mb:64}") long maxSizeMb,
+                            @Value("${rag.cache.ttl-minutes:60}") long ttlMinutes,
+                            @Value("${rag.cache.empty-result-ttl-minutes:5}") long emptyResultTtlMinutes,
+                            @Value("${rag.cache.persist-path:}") String persistPath) {
+        this.objectMapper = objectMapper;
+        this.indexManager = indexManager;
+        this.enabled = enabled;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.emptyResultTtlMillis = TimeUnit.MINUTES.toMillis(emptyResultTtlMinutes);
+        this.persistPath = persistPath;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeMb * 1024 * 1024)
+                .weigher((Key key, CachedResponse value) -> estimateBytes(key, value.response()))
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    public RAGResponse get(String normalizedQuery, long indexVersion) {
+        if (!enabled) {
+            return null;
+        }
+        Key key = key(normalizedQuery, indexVersion);
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expiresAtMillis() < System.currentTimeMillis()) {
+            cache.invalidate(key);
+            return null;
+        }
+        return cached.response();
+    }
+
+    public void put(String normalizedQuery, long indexVersion, RAGResponse response) {
+        if (!enabled || response == null) {
+            return;
+        }
+        // "Nothing found" answers are cheap to recompute and likely to change as documents arrive.
+        boolean empty = response.getSearchResults() == null || response.getSearchResults().isEmpty();
+        long expiresAt = System.currentTimeMillis() + (empty ? emptyResultTtlMillis : ttlMillis);
+        cache.put(key(normalizedQuery, indexVersion), new CachedResponse(response, expiresAt));
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private Key key(String normalizedQuery, long indexVersion) {
+        return new Key(indexManager.getIndexId(), indexVersion, normalizedQuery);
+    }
+
+    // Rough heap estimate: two bytes per char plus a fixed overhead per object.
+    private static int estimateBytes(Key key, RAGResponse response) {
+        long chars = key.indexId().length() + key.normalizedQuery().length() + length(response.getGeneratedAnswer());
+        int objects = 2;
+        if (response.getSearchResults() != null) {
+            for (SearchResult result : response.getSearchResults()) {
+                chars += length(result.getSnippet()) + length(result.getPassage()) + length(result.getFilename())
+                        + length(result.getId()) + length(result.getFilePath()) + length(result.getFileHash());
+                objects++;
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, chars * 2 + objects * 128L);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * Restores still-valid entries written by a previous run, if persistence is configured.
+     * Entries from another index, or from a version other than the opened commit (NRT views the
+     * previous run never committed, or an index changed since), would describe different contents.
+     */
+    @PostConstruct
+    private void load() {
+        if (!enabled || persistPath.isBlank()) {
+            return;
+        }
+        Path path = Path.of(persistPath);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try {
+            List<PersistedEntry> entries = objectMapper.readValue(path.toFile(), new TypeReference<List<PersistedEntry>>() {});
+            long now = System.currentTimeMillis();
+            String indexId = indexManager.getIndexId();
+            long indexVersion = indexManager.getStartupIndexVersion();
+            int restored = 0;
+            for (PersistedEntry entry : entries) {
+                if (entry.expiresAtMillis() > now && indexId.equals(entry.indexId())
+                        && entry.indexVersion() == indexVersion) {
+                    cache.put(new Key(indexId, indexVersion, entry.normalizedQuery()),
+                            new CachedResponse(entry.response(), entry.expiresAtMillis()));
+                    restored++;
+                }
+            }
+            logger.info("Restored {} of {} cached RAG responses from {} (index version {}).",
+                    restored, entries.size(), path, indexVersion);
+        } catch (IOException e) {
+            logger.warn("Could not read RAG response cache from {}. Starting empty.", path, e);
+        }
+    }
+
+    @PreDestroy
+    private void persist() {
+        if (!enabled || persistPath.isBlank()) {
+            return;
+        }
+        Path path = Path.of(persistPath);
+        List<PersistedEntry> entries = new ArrayList<>();
+        for (Map.Entry<Key, CachedResponse> entry : cache.asMap().entrySet()) {
+            Key key = entry.getKey();
+            entries.add(new PersistedEntry(key.indexId(), key.indexVersion(), key.normalizedQuery(),
+                    entry.getValue().response(), entry.getValue().expiresAtMillis()));
+        }
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            objectMapper.writeValue(tmp.toFile(), entries);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Persisted {} cached RAG responses to {}.", entries.size(), path);
+        } catch (IOException e) {
+            logger.warn("Could not persist RAG response cache to {}.", path, e);
+        }
+    }
+}
@@ -1,64 +1,268 @@
 package com.smartdocfinder.core.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartdocfinder.core.dto.RerankBatchRequest;
+import com.smartdocfinder.core.dto.RerankBatchResponse;
 import com.smartdocfinder.core.dto.SearchResult;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Re-ranks fused candidates with the cross-encoder service.
+ * Each candidate is sent as just its id and passage text. Requests from concurrent searches
+ * are collected for a short window (or until a batch holds enough query/passage pairs) and
+ * sent as one upstream call, whose per-query results are handed back to the waiting callers.
+ * Once max-in-flight calls are outstanding, new requests keep queuing and go out together in
+ * the next batch, so batches grow with load. If the reranker fails or times out, callers get
+ * their candidates back in fused order.
+ */
 @Service
 public class RerankerService {
 
     private static final Logger logger = LoggerFactory.getLogger(RerankerService.class);
 
     private final WebClient webClient;
-    private final ObjectMapper objectMapper;
+    private final String batchPath;
+    private final long windowNanos;
+    private final int maxBatchPairs;
+    private final int maxTextChars;
+    private final long timeoutMs;
+    private final Semaphore inFlight;
+    private final BlockingQueue<PendingRerank> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong pairs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Totals since startup, for the stats endpoint.
+     */
+    public record RerankStats(long batches, long requests, long pairs, long failures, int queued) {}
+
+    private record PendingRerank(String query, List<SearchResult> documents,
+                                 List<RerankBatchRequest.Candidate> candidates,
+                                 CompletableFuture<List<SearchResult>> result) {}
 
     // ✅ CORRECTED: Manually create the constructor to use @Qualifier
-    public RerankerService(@Qualifier("rerankerWebClient") WebClient webClient, ObjectMapper objectMapper) {
+    public RerankerService(@Qualifier("rerankerWebClient") WebClient webClient,
+                           @Value("${reranker.service.batch-path:/rerank/batch}") String batchPath,
+                           @Value("${reranker.batch.window-ms:5}") long windowMs,
+                           @Value("${reranker.batch.max-pairs:256}") int maxBatchPairs,
+                           @Value("${reranker.batch.max-in-flight:2}") int maxInFlight,
+                           @Value("${reranker.max-text-chars:2000}") int maxTextChars,
+                           @Value("${reranker.timeout-ms:120000}") long timeoutMs) {
         this.webClient = webClient;
-        this.objectMapper = objectMapper;
+        this.batchPath = batchPath;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMs));
+        this.maxBatchPairs = Math.max(1, maxBatchPairs);
+        this.maxTextChars = maxTextChars;
+        this.timeoutMs = timeoutMs;
+        this.inFlight = new Semaphore(Math.max(1, maxInFlight));
+        this.dispatcher = new Thread(this::dispatchLoop, "rerank-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
     }
 
     public List<SearchResult> rerank(String query, List<SearchResult> documents) {
         if (documents == null || documents.isEmpty()) {
             return List.of();
         }
+        if (!running) {
+            return documents;
+        }
+
+        logger.info("Queuing {} documents for reranking for query: '{}'", documents.size(), query);
+        PendingRerank pending = new PendingRerank(query, documents, toCandidates(documents), new CompletableFuture<>());
+        queue.add(pending);
+        try {
+            List<SearchResult> rerankedResults = pending.result().get(timeoutMs, TimeUnit.MILLISECONDS);
+            logger.info("Successfully received {} reranked documents.", rerankedResults.size());
+            return rerankedResults;
+        } catch (TimeoutException e) {
+            // Marks the request done, so the dispatcher does not send it if it is still queued.
+            pending.result().cancel(false);
+            logger.warn("Reranking exceeded {}ms; keeping fused order.", timeoutMs);
+        } catch (ExecutionException e) {
+            logger.error("Failed to call reranker service", e.getCause());
+        } catch (InterruptedException e) {
+            pending.result().cancel(false);
+            Thread.currentThread().interrupt();
+        }
+        return documents;
+    }
+
+    private List<RerankBatchRequest.Candidate> toCandidates(List<SearchResult> documents) {
+        List<RerankBatchRequest.Candidate> candidates = new ArrayList<>(documents.size());
+        for (SearchResult doc : documents) {
+            String text = doc.getPassage() != null ? doc.getPassage() : doc.getSnippet();
+            if (text == null) {
+                text = "";
+            } else if (text.length() > maxTextChars) {
+                text = text.substring(0, maxTextChars);
+            }
+            candidates.add(new RerankBatchRequest.Candidate(doc.getId(), text));
+        }
+        return candidates;
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                List<PendingRerank> batch = new ArrayList<>();
+                PendingRerank first = queue.take();
+                if (first.result().isDone()) {
+                    continue; // The caller has given up
+                }
+                batch.add(first);
+                int batchPairs = first.candidates().size();
+                long deadline = System.nanoTime() + windowNanos;
+                // The pair limit is soft: a request is never split, so the last one may overshoot it.
+                while (batchPairs < maxBatchPairs) {
+                    long waitNanos = deadline - System.nanoTime();
+                    PendingRerank next = waitNanos > 0 ? queue.poll(waitNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next.result().isDone()) {
+                        continue;
+                    }
+                    batch.add(next);
+                    batchPairs += next.candidates().size();
+                }
+                inFlight.acquire();
+                // Requests that queued while every slot was busy ride along with this batch.
+                PendingRerank next;
+                while (batchPairs < maxBatchPairs && (next = queue.poll()) != null) {
+                    if (!next.result().isDone()) {
+                        batch.add(next);
+                        batchPairs += next.candidates().size();
+                    }
+                }
+                // Callers may have timed out while the batch waited for a slot.
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    if (batch.get(i).result().isDone()) {
+                        batchPairs -= batch.remove(i).candidates().size();
+                    }
+                }
+                if (batch.isEmpty()) {
+                    inFlight.release();
+                    continue;
+                }
+                send(batch, batchPairs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
 
-        logger.info("Sending {} documents to reranker for query: '{}'", documents.size(), query);
+    private void send(List<PendingRerank> batch, int batchPairs) {
+        batches.incrementAndGet();
+        requests.addAndGet(batch.size());
+        pairs.addAndGet(batchPairs);
+        logger.debug("Sending rerank batch of {} queries ({} pairs).", batch.size(), batchPairs);
 
+        RerankBatchRequest body = new RerankBatchRequest(batch.stream()
+                .map(p -> new RerankBatchRequest.QueryGroup(p.query(), p.candidates()))
+                .toList());
         try {
-            Map<String, Object> requestBody = Map.of(
-                    "query", query,
-                    "documents", documents
-            );
-
-            Map<String, Object> response = webClient.post()
-                    .uri("/rerank")
-                    .bodyValue(requestBody)
+            webClient.post()
+                    .uri(batchPath)
+                    .bodyValue(body)
                     .retrieve()
-                    .bodyToMono(Map.class)
-                    .block();
-
-            if (response != null && response.containsKey("results")) {
-                List<SearchResult> rerankedResults = objectMapper.convertValue(
-                    response.get("results"),
-                    new TypeReference<List<SearchResult>>() {}
-                );
-                logger.info("Successfully received {} reranked documents.", rerankedResults.size());
-                return rerankedResults;
+                    .bodyToMono(RerankBatchResponse.class)
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException("Reranker returned an empty response")))
+                    .doFinally(signal -> inFlight.release())
+                    .subscribe(response -> complete(batch, response), error -> fail(batch, error));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            fail(batch, e);
+        }
+    }
+
+    private void complete(List<PendingRerank> batch, RerankBatchResponse response) {
+        List<List<RerankBatchResponse.ScoredCandidate>> results = response.getResults();
+        if (results == null || results.size() != batch.size()) {
+            fail(batch, new IllegalStateException("Reranker returned " + (results == null ? "no" : results.size())
+                    + " result lists for " + batch.size() + " queries"));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            PendingRerank pending = batch.get(i);
+            if (!pending.result().isDone()) { // The caller has given up and returned its fused order
+                pending.result().complete(applyScores(pending.documents(), results.get(i)));
             }
+        }
+    }
 
-        } catch (Exception e) {
-            logger.error("Failed to call reranker service", e);
+    private void fail(List<PendingRerank> batch, Throwable error) {
+        failures.incrementAndGet();
+        for (PendingRerank pending : batch) {
+            pending.result().completeExceptionally(error);
+        }
+    }
+
+    // Orders candidates by reranker score; any the reranker did not score keep their fused order at the end.
+    // Scores go on copies: a caller can still time out meanwhile and return the originals.
+    private static List<SearchResult> applyScores(List<SearchResult> documents,
+                                                  List<RerankBatchResponse.ScoredCandidate> scores) {
+        Map<String, SearchResult> byId = new LinkedHashMap<>();
+        for (SearchResult doc : documents) {
+            byId.put(doc.getId(), doc);
+        }
+        List<SearchResult> scored = new ArrayList<>(documents.size());
+        if (scores != null) {
+            for (RerankBatchResponse.ScoredCandidate candidate : scores) {
+                SearchResult doc = byId.remove(candidate.getId());
+                if (doc != null) {
+                    SearchResult copy = doc.copy();
+                    copy.setRerankScore(candidate.getScore());
+                    scored.add(copy);
+                }
+            }
+        }
+        scored.sort(Comparator.comparing(SearchResult::getRerankScore).reversed());
+        scored.addAll(byId.values());
+        return scored;
+    }
+
+    public RerankStats getStats() {
+        return new RerankStats(batches.get(), requests.get(), pairs.get(), failures.get(), queue.size());
+    }
+
+    /**
+     * Hands queued callers their fused order instead of leaving them to time out.
+     */
+    @PreDestroy
+    private void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        List<PendingRerank> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (PendingRerank pending : remaining) {
+            pending.result().complete(pending.documents());
         }
-        
-        return documents;
     }
 }
@@ -3,49 +3,55 @@ package com.smartdocfinder.core.service;
 import com.smartdocfinder.core.dto.SemanticSearchResponse;
 import com.smartdocfinder.core.model.DocumentEntity;
 import com.smartdocfinder.core.repository.DocumentRepository;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector; // ✅ Import this
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.KnnFloatVectorQuery;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient; // ✅ Import this
-import java.time.Duration; // ✅ Import this
+
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
+/**
+ * ✅ In-process vector search: document embeddings live in the Lucene index as
+ * KnnFloatVectorFields, so the HNSW lookup runs on the same point-in-time searcher as the keyword query.
+ */
 @Service
 public class SemanticSearchService {
 
-    private final WebClient webClient;
-    private final DocumentRepository documentRepository;
-
-    public SemanticSearchService(
-            DocumentRepository documentRepository,
-            // I also corrected the default fallback URL to use the correct service name
-            @Value("${embedding.service.url:http://embedding-api:8000}") String baseUrl) {
+    public static final String VECTOR_FIELD = "embedding";
+    // Embeddings are kept in their own small documents keyed by this field, so text re-indexing
+    // and vector write-back never have to rebuild each other's fields.
+    public static final String VECTOR_OWNER_FIELD = "vector_of";
 
-        System.out.println("Embedding Base URL: " + baseUrl);
-
-        // ✅ Create an HttpClient with a longer timeout
-        HttpClient httpClient = HttpClient.create()
-                .responseTimeout(Duration.ofSeconds(60)); // Set timeout to 60 seconds
+    private final DocumentRepository documentRepository;
 
+    public SemanticSearchService(DocumentRepository documentRepository) {
         this.documentRepository = documentRepository;
-        this.webClient = WebClient.builder()
-                .baseUrl(baseUrl)
-                .clientConnector(new ReactorClientHttpConnector(httpClient)) // ✅ Use the configured client
-                .build();
     }
 
-    public SemanticSearchResponse search(List<Float> baseVector) {
-        return webClient.post()
-                .uri("/semantic-search")
-                .bodyValue(Map.of("vector", baseVector))
-                .retrieve()
-                .bodyToMono(SemanticSearchResponse.class)
-                .block(); // .block() waits for the result, now with a longer timeout
+    public SemanticSearchResponse search(IndexSearcher searcher, float[] baseVector, int topK) throws IOException {
+        TopDocs topDocs = searcher.search(new KnnFloatVectorQuery(VECTOR_FIELD, baseVector, topK), topK);
+        // Owner ids come from doc values, not stored fields.
+        long[] ownerIds = LuceneService.readDocIds(searcher.getIndexReader(), topDocs.scoreDocs);
+
+        List<SemanticSearchResponse.SemanticHit> hits = new ArrayList<>(topDocs.scoreDocs.length);
+        for (int i = 0; i < topDocs.scoreDocs.length; i++) {
+            ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+            SemanticSearchResponse.SemanticHit hit = new SemanticSearchResponse.SemanticHit();
+            hit.setDocId(ownerIds[i]);
+            // Lucene scores cosine as (1 + cos) / 2; report the raw cosine like the old FAISS service did.
+            hit.setScore(2 * scoreDoc.score - 1);
+            hits.add(hit);
+        }
+
+        SemanticSearchResponse response = new SemanticSearchResponse();
+        response.setHits(hits);
+        return response;
     }
 
     public DocumentEntity fetchDocumentById(Long id) {
         return documentRepository.findById(id).orElse(null);
     }
-}
\ No newline at end of file
+}
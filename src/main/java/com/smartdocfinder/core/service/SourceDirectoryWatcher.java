@@ -0,0 +1,277 @@
+package com.smartdocfinder.core.service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the index in sync with indexing.source-path after the boot scan.
+ * Directories are registered recursively with a WatchService; where native watching is
+ * unavailable (or events overflow) the tree is rescanned against the file manifest instead.
+ * Events are debounced per path, so a file is only picked up once it has been quiet for a
+ * while, and coalesced into batches for DocumentUploadService.processDocumentBatch.
+ * A rate limit on files per second keeps a bulk copy from starving search traffic.
+ */
+@Component
+public class SourceDirectoryWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(SourceDirectoryWatcher.class);
+
+    private final DocumentUploadService documentUploadService;
+    private final boolean enabled;
+    private final boolean pollingOnly;
+    private final long debounceMs;
+    private final int maxBatchSize;
+    private final long pollIntervalSec;
+    private final RateLimiter rateLimiter;
+
+    // Path -> time of its most recent event; a path is flushed once it has been quiet for debounceMs.
+    private final Map<Path, Long> pending = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private final AtomicBoolean rescanRequested = new AtomicBoolean();
+
+    private volatile Path root;
+    private volatile WatchService watchService;
+    private Thread watchThread;
+    private ScheduledExecutorService scheduler;
+
+    public SourceDirectoryWatcher(DocumentUploadService documentUploadService,
+                                  @Value("${indexing.watch.enabled:false}") boolean enabled,
+                                  @Value("${indexing.watch.polling-only:false}") boolean pollingOnly,
+                                  @Value("${indexing.watch.debounce-ms:2000}") long debounceMs,
+                                  @Value("${indexing.watch.max-batch-size:100}") int maxBatchSize,
+                                  @Value("${indexing.watch.poll-interval-sec:60}") long pollIntervalSec,
+                                  @Value("${indexing.watch.max-files-per-sec:20}") double maxFilesPerSec) {
+        this.documentUploadService = documentUploadService;
+        this.enabled = enabled;
+        this.pollingOnly = pollingOnly;
+        this.debounceMs = debounceMs;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.pollIntervalSec = pollIntervalSec;
+        this.rateLimiter = RateLimiter.create(maxFilesPerSec);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts watching the given root. Called once the boot scan has finished, so the two never race.
+     */
+    public synchronized void start(Path root) {
+        if (!enabled || scheduler != null) {
+            return;
+        }
+        this.root = root;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "fs-watch-flush"));
+
+        boolean watching = !pollingOnly && startWatchService();
+        if (!watching) {
+            scheduler.scheduleWithFixedDelay(() -> rescanRequested.set(true), pollIntervalSec, pollIntervalSec, TimeUnit.SECONDS);
+            logger.info("Watching {} by polling every {}s.", root, pollIntervalSec);
+        }
+        // A single flush thread: batches are processed one at a time, after the rate limiter lets them through.
+        long tick = Math.max(100, debounceMs / 2);
+        scheduler.scheduleWithFixedDelay(this::flush, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean startWatchService() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            registerTree(root, false);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("Native file watching is unavailable for {}; falling back to polling.", root, e);
+            closeWatchService();
+            return false;
+        }
+        WatchService service = watchService;
+        watchThread = new Thread(() -> watchLoop(service), "fs-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        logger.info("Watching {} ({} directories registered).", root, watchedDirs.size());
+        return true;
+    }
+
+    // Registers dir and everything below it. For directories that appear while running, their files
+    // may already exist before the key is registered, so those are queued directly.
+    private void registerTree(Path dir, boolean queueFiles) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = d.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirs.put(key, d);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (queueFiles && attrs.isRegularFile()) {
+                    touch(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                logger.warn("Could not watch {}. Skipping.", file, exc);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void watchLoop(WatchService service) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = service.take();
+                Path dir = watchedDirs.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                        // Events were dropped; only a full comparison with the manifest is reliable now.
+                        rescanRequested.set(true);
+                        continue;
+                    }
+                    Path child = dir.resolve((Path) event.context());
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                        try {
+                            registerTree(child, true);
+                        } catch (IOException e) {
+                            logger.warn("Could not register new directory {}. Requesting a rescan.", child, e);
+                            rescanRequested.set(true);
+                        }
+                    } else {
+                        touch(child);
+                    }
+                }
+                if (!key.reset()) {
+                    // The directory is gone. Its files never get their own delete events, so rescan.
+                    watchedDirs.remove(key);
+                    rescanRequested.set(true);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void touch(Path path) {
+        pending.put(path, System.nanoTime());
+    }
+
+    /**
+     * Hands every path that has been quiet for the debounce period to the ingestion path,
+     * in batches of at most maxBatchSize.
+     */
+    private void flush() {
+        try {
+            if (rescanRequested.getAndSet(false)) {
+                rescan();
+            }
+            long quietSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(debounceMs);
+            List<Path> changed = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator();
+            while (it.hasNext() && changed.size() < maxBatchSize) {
+                Map.Entry<Path, Long> entry = it.next();
+                if (entry.getValue() > quietSince) {
+                    continue;
+                }
+                // Only drop the entry if no newer event arrived in the meantime.
+                if (!pending.remove(entry.getKey(), entry.getValue())) {
+                    continue;
+                }
+                Path path = entry.getKey();
+                if (Files.isRegularFile(path)) {
+                    changed.add(path);
+                } else if (!Files.exists(path)) {
+                    removed.add(DocumentUploadService.manifestKey(path));
+                }
+            }
+            if (!removed.isEmpty()) {
+                documentUploadService.removePaths(removed);
+            }
+            if (!changed.isEmpty()) {
+                rateLimiter.acquire(changed.size());
+                documentUploadService.processDocumentBatch(changed);
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled task.
+            logger.error("Watch-mode ingestion batch failed.", e);
+        }
+    }
+
+    /**
+     * Compares the whole tree with the manifest: changed files are queued like watch events
+     * and paths that no longer exist are removed.
+     */
+    private void rescan() throws IOException {
+        Map<String, DocumentUploadService.KnownFile> snapshot = documentUploadService.loadManifestSnapshot();
+        AtomicBoolean complete = new AtomicBoolean(true);
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && documentUploadService.statFile(file, attrs, snapshot) != null) {
+                    pending.putIfAbsent(file, System.nanoTime());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                complete.set(false);
+                logger.warn("Could not read {} during rescan. Skipping.", file, exc);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (complete.get() && !snapshot.isEmpty()) {
+            documentUploadService.removePaths(snapshot.keySet());
+        }
+    }
+
+    @PreDestroy
+    private synchronized void stop() {
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+        closeWatchService();
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.debug("Error closing WatchService.", e);
+            }
+            watchService = null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.smartdocfinder.core.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Decodes embedding vectors straight into primitive float arrays.
+ * Accepts the plain JSON number arrays as well as the compact encodings the embedding
+ * service can negotiate: base64-packed or raw little-endian float32.
+ */
+public final class FloatVectorCodec {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private FloatVectorCodec() {
+    }
+
+    public static float[] fromLittleEndian(ByteBuffer buffer) throws IOException {
+        ByteBuffer le = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (le.remaining() % Float.BYTES != 0) {
+            throw new IOException("Packed vector of " + le.remaining() + " bytes is not a whole number of float32 values");
+        }
+        float[] vector = new float[le.remaining() / Float.BYTES];
+        le.asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    /**
+     * Reads a framed multi-vector body: int32 vector count, int32 dimension, then count * dimension
+     * float32 values, all little-endian. The first vector is the base embedding, the rest are sub-embeddings.
+     * The header is checked against the body length before anything is allocated, so a truncated or
+     * corrupt body is rejected instead of allocating whatever the header claims.
+     */
+    public static float[][] readFramedVectors(ByteBuffer buffer) throws IOException {
+        ByteBuffer le = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (le.remaining() < 2 * Integer.BYTES) {
+            throw new IOException("Framed vector body of " + le.remaining() + " bytes has no header");
+        }
+        int count = le.getInt();
+        int dimension = le.getInt();
+        if (count < 0 || dimension <= 0 || (long) count * dimension * Float.BYTES != le.remaining()) {
+            throw new IOException("Framed vector header (" + count + " x " + dimension + ") does not match the "
+                    + le.remaining() + " bytes that follow");
+        }
+        float[][] vectors = new float[count][dimension];
+        for (float[] vector : vectors) {
+            le.asFloatBuffer().get(vector);
+            le.position(le.position() + dimension * Float.BYTES);
+        }
+        return vectors;
+    }
+
+    static float[] readVector(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_STRING) {
+            return fromLittleEndian(ByteBuffer.wrap(p.getBinaryValue()));
+        }
+        if (token != JsonToken.START_ARRAY) {
+            return (float[]) ctxt.handleUnexpectedToken(float[].class, p);
+        }
+        float[] buffer = new float[INITIAL_CAPACITY];
+        int size = 0;
+        while (p.nextToken() != JsonToken.END_ARRAY) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = p.getFloatValue();
+        }
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+    }
+
+    public static class VectorDeserializer extends JsonDeserializer<float[]> {
+        @Override
+        public float[] deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            return readVector(p, ctxt);
+        }
+    }
+
+    public static class MatrixDeserializer extends JsonDeserializer<float[][]> {
+        @Override
+        public float[][] deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (p.currentToken() != JsonToken.START_ARRAY) {
+                return (float[][]) ctxt.handleUnexpectedToken(float[][].class, p);
+            }
+            float[][] rows = new float[8][];
+            int size = 0;
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                if (size == rows.length) {
+                    rows = Arrays.copyOf(rows, size * 2);
+                }
+                rows[size++] = readVector(p, ctxt);
+            }
+            return Arrays.copyOf(rows, size);
+        }
+    }
+}
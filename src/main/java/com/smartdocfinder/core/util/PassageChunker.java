@@ -0,0 +1,63 @@
+package com.smartdocfinder.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits extracted text into overlapping passages of roughly equal size for passage-level
+ * indexing. Boundaries are moved back to the nearest whitespace where possible, so words
+ * are not cut in half.
+ */
+public final class PassageChunker {
+
+    private PassageChunker() {
+    }
+
+    /**
+     * A passage and the character offset at which it starts in the full text.
+     */
+    public record Passage(int start, String text) {}
+
+    /**
+     * Returns at least one passage (an empty one for empty text). Each passage holds at most
+     * size characters and repeats roughly the last overlap characters of the previous one.
+     */
+    public static List<Passage> chunk(String text, int size, int overlap) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Passage size must be positive");
+        }
+        int step = Math.max(1, size - Math.max(0, Math.min(overlap, size - 1)));
+        List<Passage> passages = new ArrayList<>(text.length() / step + 1);
+        int start = 0;
+        while (true) {
+            int end = Math.min(text.length(), start + size);
+            if (end < text.length()) {
+                // Prefer a whitespace break in the last fifth of the window.
+                int floor = start + size - size / 5;
+                int ws = lastWhitespace(text, floor, end);
+                if (ws > start) {
+                    end = ws;
+                }
+            }
+            passages.add(new Passage(start, text.substring(start, end)));
+            if (end >= text.length()) {
+                return passages;
+            }
+            int next = Math.max(start + 1, end - (size - step));
+            // Start the next passage at a word boundary, without skipping past the current end.
+            while (next < end && next > 0 && !Character.isWhitespace(text.charAt(next - 1))) {
+                next++;
+            }
+            start = next;
+        }
+    }
+
+    private static int lastWhitespace(String text, int from, int to) {
+        for (int i = to; i > from; i--) {
+            if (Character.isWhitespace(text.charAt(i - 1))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
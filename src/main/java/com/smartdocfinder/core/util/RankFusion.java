@@ -0,0 +1,102 @@
+package com.smartdocfinder.core.util;
+
+/**
+ * Reciprocal Rank Fusion over two ranked lists of document ids, on primitive arrays only:
+ * ids are looked up in a small open-addressing table instead of boxed hash maps.
+ * Each list must be in rank order without duplicates.
+ */
+public final class RankFusion {
+
+    private RankFusion() {
+    }
+
+    /**
+     * The fused list, best first. Ranks are 1-based; 0 means the document was not in that list.
+     * keywordScores and semanticScores carry each branch's own score (0 when absent), since the
+     * RRF score only reflects ranks and says nothing about how far apart the candidates are.
+     */
+    public record Fused(long[] ids, float[] scores, int[] keywordRanks, int[] semanticRanks,
+                        float[] keywordScores, float[] semanticScores) {
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    public static Fused rrf(long[] keyword, long[] semantic, int k) {
+        return rrf(keyword, new float[keyword.length], semantic, new float[semantic.length], k);
+    }
+
+    /**
+     * Fuses two ranked lists whose raw scores are given alongside, in the same order.
+     */
+    public static Fused rrf(long[] keyword, float[] keywordScores, long[] semantic, float[] semanticScores, int k) {
+        int capacity = Integer.highestOneBit(Math.max(2, (keyword.length + semantic.length) * 2) - 1) << 1;
+        int mask = capacity - 1;
+        long[] slotIds = new long[capacity];
+        int[] slotIndex = new int[capacity]; // Entry index + 1; 0 marks an empty slot
+
+        int maxEntries = keyword.length + semantic.length;
+        long[] ids = new long[maxEntries];
+        int[] keywordRanks = new int[maxEntries];
+        int[] semanticRanks = new int[maxEntries];
+        int size = 0;
+
+        for (int pass = 0; pass < 2; pass++) {
+            long[] ranked = pass == 0 ? keyword : semantic;
+            int[] ranks = pass == 0 ? keywordRanks : semanticRanks;
+            for (int r = 0; r < ranked.length; r++) {
+                long id = ranked[r];
+                int slot = mix(id) & mask;
+                while (slotIndex[slot] != 0 && slotIds[slot] != id) {
+                    slot = (slot + 1) & mask;
+                }
+                int entry;
+                if (slotIndex[slot] == 0) {
+                    entry = size++;
+                    slotIds[slot] = id;
+                    slotIndex[slot] = entry + 1;
+                    ids[entry] = id;
+                } else {
+                    entry = slotIndex[slot] - 1;
+                }
+                ranks[entry] = r + 1;
+            }
+        }
+
+        float[] entryScores = new float[size];
+        for (int i = 0; i < size; i++) {
+            float keywordRrf = keywordRanks[i] != 0 ? 1.0f / (k + keywordRanks[i]) : 0f;
+            float semanticRrf = semanticRanks[i] != 0 ? 1.0f / (k + semanticRanks[i]) : 0f;
+            entryScores[i] = keywordRrf + semanticRrf;
+        }
+
+        // Insertion sort by score: the lists are a few hundred entries at most.
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            int j = i;
+            while (j > 0 && entryScores[order[j - 1]] < entryScores[i]) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = i;
+        }
+
+        Fused fused = new Fused(new long[size], new float[size], new int[size], new int[size],
+                new float[size], new float[size]);
+        for (int i = 0; i < size; i++) {
+            int entry = order[i];
+            fused.ids()[i] = ids[entry];
+            fused.scores()[i] = entryScores[entry];
+            fused.keywordRanks()[i] = keywordRanks[entry];
+            fused.semanticRanks()[i] = semanticRanks[entry];
+            fused.keywordScores()[i] = keywordRanks[entry] != 0 ? keywordScores[keywordRanks[entry] - 1] : 0f;
+            fused.semanticScores()[i] = semanticRanks[entry] != 0 ? semanticScores[semanticRanks[entry] - 1] : 0f;
+        }
+        return fused;
+    }
+
+    private static int mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,119 @@
+package com.smartdocfinder.core.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs at most one call per key at a time. Callers that ask for a key whose call is still
+ * running attach to it and receive the same result. Every caller gets its own future: cancelling
+ * it detaches only that caller, and the underlying call is cancelled (interrupted) once no caller
+ * is left waiting, so the next caller for the key starts a fresh one.
+ */
+public final class SingleFlight<K, V> {
+
+    private static final class Call<V> {
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private Future<?> task;
+        private int waiters;
+    }
+
+    private final ExecutorService executor;
+    // Guarded by itself; the critical sections are tiny.
+    private final Map<K, Call<V>> calls = new HashMap<>();
+    private long started;
+    private long coalesced;
+    private long abandoned;
+
+    public SingleFlight(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns this caller's view of the call for key, starting work on the executor if none is running.
+     */
+    public CompletableFuture<V> join(K key, Callable<V> work) {
+        Call<V> call;
+        synchronized (calls) {
+            call = calls.get(key);
+            if (call == null) {
+                call = new Call<>();
+                calls.put(key, call);
+                Call<V> owner = call;
+                call.task = executor.submit(() -> run(key, owner, work));
+                started++;
+            } else {
+                coalesced++;
+            }
+            call.waiters++;
+        }
+
+        Call<V> joined = call;
+        CompletableFuture<V> waiter = new CompletableFuture<>();
+        joined.result.whenComplete((value, error) -> {
+            if (error == null) {
+                waiter.complete(value);
+            } else {
+                waiter.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            }
+        });
+        // Runs exactly once per caller, whether the call finished or the caller gave up.
+        waiter.whenComplete((value, error) -> leave(key, joined));
+        return waiter;
+    }
+
+    private void run(K key, Call<V> call, Callable<V> work) {
+        try {
+            call.result.complete(work.call());
+        } catch (Throwable t) {
+            call.result.completeExceptionally(t);
+        } finally {
+            synchronized (calls) {
+                calls.remove(key, call);
+            }
+        }
+    }
+
+    private void leave(K key, Call<V> call) {
+        synchronized (calls) {
+            if (--call.waiters > 0 || call.result.isDone()) {
+                return;
+            }
+            // Nobody is waiting any more: stop the work and let the next caller start afresh.
+            calls.remove(key, call);
+            abandoned++;
+        }
+        call.task.cancel(true);
+        call.result.completeExceptionally(new CancellationException("All callers left"));
+    }
+
+    public int inFlight() {
+        synchronized (calls) {
+            return calls.size();
+        }
+    }
+
+    public long startedCount() {
+        synchronized (calls) {
+            return started;
+        }
+    }
+
+    public long coalescedCount() {
+        synchronized (calls) {
+            return coalesced;
+        }
+    }
+
+    public long abandonedCount() {
+        synchronized (calls) {
+            return abandoned;
+        }
+    }
+}